@@ -0,0 +1,102 @@
+package com.alexander.smartchat.benchmark;
+
+import com.alexander.smartchat.entity.Role;
+import com.alexander.smartchat.entity.User;
+import com.alexander.smartchat.filter.JwtFilter;
+import com.alexander.smartchat.security.UserDetailsImpl;
+import com.alexander.smartchat.service.BlacklistTokenService;
+import com.alexander.smartchat.service.UserService;
+import com.alexander.smartchat.service.jwt.JwtProvider;
+import com.alexander.smartchat.service.jwt.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Стоимость JwtFilter на один запрос: полный проход фильтра с заглушками сервисов (с кешем проверенных
+ * токенов и без него), один разбор токена заранее собранным парсером и прежняя схема с тремя разборами.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtFilterBenchmark {
+
+    private static final String ACCESS_SECRET = "YWNjZXNzLXNlY3JldC1mb3ItdGVzdHMtYWNjZXNzLXNlY3JldC1mb3ItdGVzdHM=";
+    private static final String REFRESH_SECRET = "cmVmcmVzaC1zZWNyZXQtZm9yLXRlc3RzLXJlZnJlc2gtc2VjcmV0LWZvci10ZXN0cw==";
+
+    @Param({"false", "true"})
+    private boolean verifiedCache;
+
+    private JwtProvider jwtProvider;
+    private JwtFilter jwtFilter;
+    private SecretKey accessKey;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtProvider = new JwtProvider(ACCESS_SECRET, REFRESH_SECRET);
+        ReflectionTestUtils.setField(jwtProvider, "accessValidity", 60L);
+        accessKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(ACCESS_SECRET));
+
+        User user = User.builder().username("alice").password("pass").role(Role.USER).build();
+        token = jwtProvider.generateAccessToken(user, 0);
+
+        UserService userService = mock(UserService.class);
+        when(userService.loadUserByUsername(anyString())).thenReturn(new UserDetailsImpl(user));
+        BlacklistTokenService blacklistTokenService = mock(BlacklistTokenService.class);
+        when(blacklistTokenService.isBlacklisted(anyString(), any(Claims.class))).thenReturn(false);
+        VerifiedTokenCache tokenCache = new VerifiedTokenCache(jwtProvider, verifiedCache, 10_000, new SimpleMeterRegistry());
+        jwtFilter = new JwtFilter(tokenCache, userService, blacklistTokenService);
+    }
+
+    @Benchmark
+    public MockHttpServletRequest filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        SecurityContextHolder.clearContext();
+        return request;
+    }
+
+    @Benchmark
+    public Claims parseOnce() {
+        return jwtProvider.parseAccessToken(token).orElseThrow();
+    }
+
+    @Benchmark
+    public Claims legacyTripleParse() {
+        Jwts.parser().verifyWith(accessKey).build().parseSignedClaims(token);
+        Jwts.parser().verifyWith(accessKey).build().parseSignedClaims(token);
+        return Jwts.parser().verifyWith(accessKey).build().parseSignedClaims(token).getPayload();
+    }
+}
@@ -0,0 +1,105 @@
+package com.alexander.smartchat.benchmark;
+
+import com.alexander.smartchat.dto.JwtResponse;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.service.redis.serializer.JwtResponseCompactSerializer;
+import com.alexander.smartchat.service.redis.serializer.MessageCompactSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение JSON и компактного формата для значений Redis: время сериализации и чтения.
+ * Размеры значений печатаются при подготовке каждого набора параметров.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RedisSerializerBenchmark {
+
+    @Param({"json", "compact"})
+    private String format;
+
+    @Param({"40", "2000"})
+    private int textLength;
+
+    private RedisSerializer<MessageResponseDto> messageSerializer;
+    private RedisSerializer<JwtResponse> tokenSerializer;
+    private MessageResponseDto message;
+    private JwtResponse token;
+    private byte[] messageBytes;
+    private byte[] tokenBytes;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        RedisSerializer<MessageResponseDto> messageJson = new Jackson2JsonRedisSerializer<>(objectMapper, MessageResponseDto.class);
+        RedisSerializer<Object> tokenJson = new GenericJackson2JsonRedisSerializer();
+        if (format.equals("compact")) {
+            messageSerializer = new MessageCompactSerializer(messageJson, 256);
+            tokenSerializer = new JwtResponseCompactSerializer(tokenJson, 256);
+        } else {
+            messageSerializer = messageJson;
+            tokenSerializer = (RedisSerializer<JwtResponse>) (RedisSerializer<?>) tokenJson;
+        }
+
+        message = new MessageResponseDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+            text(textLength), Instant.now());
+        token = new JwtResponse(text(180), text(180));
+        messageBytes = messageSerializer.serialize(message);
+        tokenBytes = tokenSerializer.serialize(token);
+        System.out.printf("%n%s: сообщение %d байт, токены %d байт%n", format, messageBytes.length, tokenBytes.length);
+    }
+
+    private static String text(int length) {
+        String[] words = {"привет", "deploy", "готово", "ok", "сообщение", "release", "чат", "build"};
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(words[ThreadLocalRandom.current().nextInt(words.length)]).append(' ');
+        }
+        return sb.substring(0, length);
+    }
+
+    @Benchmark
+    public byte[] serializeMessage() {
+        return messageSerializer.serialize(message);
+    }
+
+    @Benchmark
+    public MessageResponseDto deserializeMessage() {
+        return messageSerializer.deserialize(messageBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeToken() {
+        return tokenSerializer.serialize(token);
+    }
+
+    @Benchmark
+    public JwtResponse deserializeToken() {
+        return tokenSerializer.deserialize(tokenBytes);
+    }
+}
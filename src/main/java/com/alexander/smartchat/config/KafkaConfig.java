@@ -1,10 +1,22 @@
 package com.alexander.smartchat.config;
 
+import com.alexander.smartchat.service.kafka.consumer.MessageRetryPolicy;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.stream.Stream;
 
 @Configuration
 public class KafkaConfig {
@@ -15,4 +27,59 @@ public class KafkaConfig {
             .replicas(1)
             .build();
     }
+
+    @Bean
+    public KafkaAdmin.NewTopics failedMessageTopics(MessageRetryPolicy retryPolicy,
+                                                    @Value("${kafka.topic.dlt}") String deadLetterTopic) {
+        return new KafkaAdmin.NewTopics(Stream.concat(Arrays.stream(retryPolicy.retryTopics()), Stream.of(deadLetterTopic))
+            .map(name -> TopicBuilder.name(name)
+                .partitions(3)
+                .replicas(1)
+                .build())
+            .toArray(NewTopic[]::new));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+        ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+        ConsumerFactory<Object, Object> consumerFactory,
+        @Value("${kafka.consumer.batch.size}") int batchSize,
+        @Value("${kafka.consumer.batch.max-wait}") Duration maxWait,
+        @Value("${kafka.consumer.batch.min-bytes}") int minBytes) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setKafkaConsumerProperties(batchOverrides(batchSize, maxWait, minBytes));
+        return factory;
+    }
+
+    /**
+     * Фабрика для одноразовой группы агрегатора активности. Собирается без общего конфигуратора,
+     * чтобы не получить DrainingRebalanceListener основного потребителя, а в режиме MANUAL без вызовов
+     * acknowledge смещения никогда не фиксируются.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> activityKafkaListenerContainerFactory(
+        ConsumerFactory<Object, Object> consumerFactory,
+        @Value("${kafka.consumer.batch.size}") int batchSize,
+        @Value("${kafka.consumer.batch.max-wait}") Duration maxWait,
+        @Value("${kafka.consumer.batch.min-bytes}") int minBytes) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+
+        Properties overrides = batchOverrides(batchSize, maxWait, minBytes);
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        factory.getContainerProperties().setKafkaConsumerProperties(overrides);
+        return factory;
+    }
+
+    private static Properties batchOverrides(int batchSize, Duration maxWait, int minBytes) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(batchSize));
+        overrides.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, String.valueOf(maxWait.toMillis()));
+        overrides.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, String.valueOf(minBytes));
+        return overrides;
+    }
 }
@@ -0,0 +1,64 @@
+package com.alexander.smartchat.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Читает тело application/x-ndjson (по одному JSON-объекту на строку) в список.
+ * Конвертер только для чтения: запись ни для какого типа не поддерживается.
+ */
+public class NdjsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<List<?>> {
+
+    private final ObjectMapper objectMapper;
+
+    public NdjsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_NDJSON);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public List<?> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        JavaType elementType = objectMapper.getTypeFactory().constructType(type).getContentType();
+        try (MappingIterator<Object> values = objectMapper.readerFor(elementType).readValues(inputMessage.getBody())) {
+            return values.readAll();
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Некорректный NDJSON: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected List<?> readInternal(Class<? extends List<?>> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(List<?> list, Type type, HttpOutputMessage outputMessage) {
+        throw new HttpMessageNotWritableException("Формат NDJSON поддерживается только для чтения запросов");
+    }
+}
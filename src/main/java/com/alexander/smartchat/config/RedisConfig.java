@@ -1,14 +1,28 @@
 package com.alexander.smartchat.config;
 
 import com.alexander.smartchat.dto.JwtResponse;
-import com.alexander.smartchat.entity.ChatMessage;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.service.redis.RecentMessagesNearCache;
+import com.alexander.smartchat.service.redis.RevokedTokenFilter;
+import com.alexander.smartchat.service.redis.UserDetailsCache;
+import com.alexander.smartchat.service.redis.serializer.JwtResponseCompactSerializer;
+import com.alexander.smartchat.service.redis.serializer.MessageCompactSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -20,38 +34,64 @@ public class RedisConfig {
     @Value("${spring.data.redis.port}")
     private int redisPort;
 
-    @Bean
-    public RedisConnectionFactory redisConnectionFactory() {
-        return new LettuceConnectionFactory(redisHost, redisPort);
+    @Value("${chat.redis.compact-serialization}")
+    private boolean compactSerialization;
+
+    @Value("${chat.redis.compression-threshold}")
+    private int compressionThreshold;
+
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources redisClientResources() {
+        return DefaultClientResources.create();
     }
 
     @Bean
-    public RedisTemplate<String, String> blacklistRedisTemplate() {
-        RedisTemplate<String, String> tpl = new RedisTemplate<>();
-        tpl.setConnectionFactory(redisConnectionFactory());
-        tpl.setKeySerializer(new StringRedisSerializer());
-        tpl.setValueSerializer(new StringRedisSerializer());
-        return tpl;
+    public RedisConnectionFactory redisConnectionFactory() {
+        LettuceClientConfiguration clientConfiguration = LettuceClientConfiguration.builder()
+            .clientResources(redisClientResources())
+            .build();
+        return new LettuceConnectionFactory(new RedisStandaloneConfiguration(redisHost, redisPort), clientConfiguration);
     }
 
     @Bean
     public RedisTemplate<String, JwtResponse> tokenRedisTemplate() {
         RedisTemplate<String, JwtResponse> tpl = new RedisTemplate<>();
         tpl.setConnectionFactory(redisConnectionFactory());
+        RedisSerializer<?> json = new GenericJackson2JsonRedisSerializer();
+        RedisSerializer<?> values = compactSerialization
+            ? new JwtResponseCompactSerializer(json, compressionThreshold)
+            : json;
         tpl.setKeySerializer(new StringRedisSerializer());
-        tpl.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        tpl.setValueSerializer(values);
         tpl.setHashKeySerializer(new StringRedisSerializer());
-        tpl.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        tpl.setHashValueSerializer(values);
         return tpl;
     }
 
     @Bean
-    public RedisTemplate<String, ChatMessage> messageRedisTemplate(RedisConnectionFactory factory) {
-        RedisTemplate<String, ChatMessage> template = new RedisTemplate<>();
+    public RedisTemplate<String, MessageResponseDto> messageRedisTemplate(RedisConnectionFactory factory,
+                                                                          ObjectMapper objectMapper) {
+        RedisTemplate<String, MessageResponseDto> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        RedisSerializer<MessageResponseDto> json = new Jackson2JsonRedisSerializer<>(objectMapper, MessageResponseDto.class);
+        template.setValueSerializer(compactSerialization
+            ? new MessageCompactSerializer(json, compressionThreshold)
+            : json);
         return template;
     }
 
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory,
+                                                                       RecentMessagesNearCache recentMessagesNearCache,
+                                                                       UserDetailsCache userDetailsCache,
+                                                                       RevokedTokenFilter revokedTokenFilter) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(recentMessagesNearCache,
+            new ChannelTopic(RecentMessagesNearCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(userDetailsCache, new ChannelTopic(UserDetailsCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(revokedTokenFilter, new ChannelTopic(RevokedTokenFilter.REVOKED_CHANNEL));
+        return container;
+    }
 }
@@ -0,0 +1,34 @@
+package com.alexander.smartchat.config;
+
+import com.alexander.smartchat.dto.ActivityResolution;
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.SearchMode;
+import com.alexander.smartchat.service.kafka.producer.DeliveryMode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, DeliveryMode.class, DeliveryMode::fromValue);
+        registry.addConverter(String.class, SearchMode.class, SearchMode::fromValue);
+        registry.addConverter(String.class, CountMode.class, CountMode::fromValue);
+        registry.addConverter(String.class, ActivityResolution.class, ActivityResolution::fromValue);
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new NdjsonHttpMessageConverter(objectMapper));
+    }
+}
@@ -41,4 +41,10 @@ public class AuthController {
         blacklistTokenService.saveTokenBlackList(header);
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/logout/all")
+    public ResponseEntity<Void> logoutAll(@RequestHeader(name = HttpHeaders.AUTHORIZATION) String header) {
+        blacklistTokenService.revokeAllSessions(header);
+        return ResponseEntity.ok().build();
+    }
 }
@@ -23,8 +23,12 @@ public class ChatController {
     private final ChatService chatService;
 
     @GetMapping
-    public ResponseEntity<List<ChatResponseDto>> getUserChats(@RequestParam UUID userId) {
-        return ResponseEntity.ok(chatService.getUserChats(userId));
+    public ResponseEntity<List<ChatResponseDto>> getUserChats(
+        @RequestParam UUID userId,
+        @RequestParam(defaultValue = "0") int page,
+        @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(chatService.getUserChats(userId, page, size));
     }
 
     @PostMapping
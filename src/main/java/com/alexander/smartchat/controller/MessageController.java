@@ -1,13 +1,18 @@
 package com.alexander.smartchat.controller;
 
+import com.alexander.smartchat.dto.ActivityResolution;
+import com.alexander.smartchat.dto.ActivityStatsDto;
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.MessageHistoryDto;
 import com.alexander.smartchat.dto.MessageResponseDto;
 import com.alexander.smartchat.dto.MessageSearchDto;
 import com.alexander.smartchat.dto.MessageStatsDto;
-import com.alexander.smartchat.entity.ChatMessage;
+import com.alexander.smartchat.dto.SearchMode;
 import com.alexander.smartchat.service.MessageService;
-import com.alexander.smartchat.service.redis.RedisCacheService;
+import com.alexander.smartchat.service.analytics.ActivityAggregator;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -24,22 +29,35 @@ import java.util.UUID;
 public class MessageController {
 
     private final MessageService messageService;
-    private final RedisCacheService redisCacheService;
+    private final ActivityAggregator activityAggregator;
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String PREV_CURSOR_HEADER = "X-Prev-Cursor";
 
     @GetMapping
     public ResponseEntity<List<MessageResponseDto>> getMessages(
         @RequestParam UUID chatId,
-        @RequestParam(defaultValue = "50") int limit
+        @RequestParam(defaultValue = "50") int limit,
+        @RequestParam(required = false) String before,
+        @RequestParam(required = false) String after
     ) {
-        return ResponseEntity.ok(messageService.getMessages(chatId, limit));
+        MessageHistoryDto history = messageService.getMessages(chatId, limit, before, after);
+        HttpHeaders headers = new HttpHeaders();
+        if (history.nextCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, history.nextCursor());
+        }
+        if (history.prevCursor() != null) {
+            headers.add(PREV_CURSOR_HEADER, history.prevCursor());
+        }
+        return ResponseEntity.ok().headers(headers).body(history.messages());
     }
 
     @GetMapping("/recent")
-    public ResponseEntity<List<ChatMessage>> getRecent(
+    public ResponseEntity<List<MessageResponseDto>> getRecent(
         @RequestParam UUID chatId,
         @RequestParam(defaultValue = "50") int limit
     ) {
-        return ResponseEntity.ok(redisCacheService.getRecentMessages(chatId, limit));
+        return ResponseEntity.ok(messageService.getRecentMessages(chatId, limit));
     }
 
 
@@ -47,13 +65,26 @@ public class MessageController {
     public ResponseEntity<MessageSearchDto> search(
         @RequestParam UUID chatId,
         @RequestParam String keyword,
-        @RequestParam(defaultValue = "50") int limit
+        @RequestParam(defaultValue = "50") int limit,
+        @RequestParam(defaultValue = "0") int page,
+        @RequestParam(defaultValue = "fts") SearchMode mode,
+        @RequestParam(defaultValue = "capped") CountMode count
     ) {
-        return ResponseEntity.ok(messageService.search(chatId, keyword, limit));
+        return ResponseEntity.ok(messageService.search(chatId, keyword, limit, page, mode, count));
     }
 
     @GetMapping("/stats")
     public ResponseEntity<MessageStatsDto> getStats(@RequestParam UUID chatId) {
         return ResponseEntity.ok(messageService.getStats(chatId));
     }
+
+    @GetMapping("/stats/activity")
+    public ResponseEntity<ActivityStatsDto> getActivity(
+        @RequestParam(required = false) UUID chatId,
+        @RequestParam(defaultValue = "minute") ActivityResolution resolution,
+        @RequestParam(defaultValue = "60") int buckets,
+        @RequestParam(defaultValue = "10") int top
+    ) {
+        return ResponseEntity.ok(activityAggregator.getActivity(chatId, resolution, buckets, top));
+    }
 }
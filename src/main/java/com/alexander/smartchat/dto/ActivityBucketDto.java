@@ -0,0 +1,10 @@
+package com.alexander.smartchat.dto;
+
+import java.time.Instant;
+
+public record ActivityBucketDto(
+    Instant start,
+    long messages,
+    long activeSenders
+) {
+}
@@ -0,0 +1,30 @@
+package com.alexander.smartchat.dto;
+
+import java.time.Duration;
+import java.util.Locale;
+
+public enum ActivityResolution {
+    MINUTE(Duration.ofMinutes(1), 60),
+    HOUR(Duration.ofHours(1), 48),
+    DAY(Duration.ofDays(1), 30);
+
+    private final long bucketMillis;
+    private final int retainedBuckets;
+
+    ActivityResolution(Duration bucket, int retainedBuckets) {
+        this.bucketMillis = bucket.toMillis();
+        this.retainedBuckets = retainedBuckets;
+    }
+
+    public long bucketMillis() {
+        return bucketMillis;
+    }
+
+    public int retainedBuckets() {
+        return retainedBuckets;
+    }
+
+    public static ActivityResolution fromValue(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
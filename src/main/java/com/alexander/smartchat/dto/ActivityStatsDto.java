@@ -0,0 +1,14 @@
+package com.alexander.smartchat.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record ActivityStatsDto(
+    UUID chatId,
+    ActivityResolution resolution,
+    List<ActivityBucketDto> buckets,
+    long messages,
+    long activeSenders,
+    List<TopSenderDto> topSenders
+) {
+}
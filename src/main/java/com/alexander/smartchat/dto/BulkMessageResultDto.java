@@ -0,0 +1,18 @@
+package com.alexander.smartchat.dto;
+
+import java.util.UUID;
+
+public record BulkMessageResultDto(
+    int index,
+    UUID id,
+    Status status,
+    Integer partition,
+    Long offset,
+    String error
+) {
+    public enum Status {
+        ACCEPTED,
+        REJECTED,
+        FAILED
+    }
+}
@@ -0,0 +1,17 @@
+package com.alexander.smartchat.dto;
+
+import java.util.Locale;
+
+/**
+ * Способ подсчета общего числа совпадений в поиске: точный, с отсечкой на заданном пороге
+ * или оценка планировщика по статистике таблицы.
+ */
+public enum CountMode {
+    EXACT,
+    CAPPED,
+    ESTIMATED;
+
+    public static CountMode fromValue(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,6 @@
+package com.alexander.smartchat.dto;
+
+public record DeadLetterReplayDto(
+    int replayed
+) {
+}
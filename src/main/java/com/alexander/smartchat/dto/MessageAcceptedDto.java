@@ -0,0 +1,13 @@
+package com.alexander.smartchat.dto;
+
+import com.alexander.smartchat.service.kafka.producer.DeliveryMode;
+
+import java.util.UUID;
+
+public record MessageAcceptedDto(
+    UUID id,
+    DeliveryMode deliveryMode,
+    Integer partition,
+    Long offset
+) {
+}
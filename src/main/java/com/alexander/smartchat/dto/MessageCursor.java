@@ -0,0 +1,31 @@
+package com.alexander.smartchat.dto;
+
+import com.alexander.smartchat.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+public record MessageCursor(
+    Instant sentAt,
+    UUID id
+) {
+    public static MessageCursor of(MessageResponseDto message) {
+        return new MessageCursor(message.sentAt(), message.id());
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((sentAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            return new MessageCursor(Instant.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + cursor);
+        }
+    }
+}
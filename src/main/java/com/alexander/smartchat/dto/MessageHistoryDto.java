@@ -0,0 +1,10 @@
+package com.alexander.smartchat.dto;
+
+import java.util.List;
+
+public record MessageHistoryDto(
+    List<MessageResponseDto> messages,
+    String nextCursor,
+    String prevCursor
+) {
+}
@@ -3,8 +3,16 @@ package com.alexander.smartchat.dto;
 import java.util.UUID;
 
 public record MessageRequestDto(
+    UUID id,
     UUID chatId,
     UUID senderId,
     String text
 ) {
+    public MessageRequestDto(UUID chatId, UUID senderId, String text) {
+        this(null, chatId, senderId, text);
+    }
+
+    public MessageRequestDto withId(UUID id) {
+        return new MessageRequestDto(id, chatId, senderId, text);
+    }
 }
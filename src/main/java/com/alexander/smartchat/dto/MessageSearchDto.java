@@ -3,7 +3,9 @@ package com.alexander.smartchat.dto;
 import java.util.List;
 
 public record MessageSearchDto(
-    List<MessageResponseDto> messages,
-    Long totalMatches
+    List<MessageSearchHitDto> messages,
+    Long totalMatches,
+    CountMode countMode,
+    boolean totalIsLowerBound
 ) {
 }
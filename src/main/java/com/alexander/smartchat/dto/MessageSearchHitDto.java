@@ -0,0 +1,15 @@
+package com.alexander.smartchat.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record MessageSearchHitDto(
+    UUID id,
+    UUID chatId,
+    UUID senderId,
+    String text,
+    Instant sentAt,
+    double rank,
+    String snippet
+) {
+}
@@ -0,0 +1,12 @@
+package com.alexander.smartchat.dto;
+
+import java.util.Locale;
+
+public enum SearchMode {
+    FTS,
+    SUBSTRING;
+
+    public static SearchMode fromValue(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,10 @@
+package com.alexander.smartchat.dto;
+
+import java.util.UUID;
+
+public record TopSenderDto(
+    UUID senderId,
+    long messages,
+    long maxError
+) {
+}
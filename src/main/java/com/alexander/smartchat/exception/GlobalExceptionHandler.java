@@ -3,6 +3,7 @@ package com.alexander.smartchat.exception;
 import com.alexander.smartchat.dto.ErrorDto;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.KafkaException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -31,6 +32,23 @@ public class GlobalExceptionHandler {
             .body(new ErrorDto("NOT_FOUND", ex.getMessage()));
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorDto> handleInvalidCursor(InvalidCursorException ex) {
+        return ResponseEntity.badRequest().body(new ErrorDto("INVALID_CURSOR", ex.getMessage()));
+    }
+
+    @ExceptionHandler(PayloadTooLargeException.class)
+    public ResponseEntity<ErrorDto> handlePayloadTooLarge(PayloadTooLargeException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+            .body(new ErrorDto("PAYLOAD_TOO_LARGE", ex.getMessage()));
+    }
+
+    @ExceptionHandler(KafkaException.class)
+    public ResponseEntity<ErrorDto> handleKafka(KafkaException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .body(new ErrorDto("BROKER_UNAVAILABLE", ex.getMessage()));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorDto> handleValidation(MethodArgumentNotValidException ex) {
         String errorMsg = ex.getFieldErrors().stream()
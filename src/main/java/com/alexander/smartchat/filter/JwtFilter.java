@@ -2,7 +2,7 @@ package com.alexander.smartchat.filter;
 
 import com.alexander.smartchat.service.BlacklistTokenService;
 import com.alexander.smartchat.service.UserService;
-import com.alexander.smartchat.service.jwt.JwtProvider;
+import com.alexander.smartchat.service.jwt.VerifiedTokenCache;
 import com.alexander.smartchat.util.JwtParseUtil;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
@@ -26,7 +26,12 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class JwtFilter extends OncePerRequestFilter {
 
-    private final JwtProvider jwtProvider;
+    /**
+     * Атрибут запроса с claims проверенного access-токена, чтобы обработчики не разбирали токен повторно.
+     */
+    public static final String ACCESS_CLAIMS_ATTRIBUTE = JwtFilter.class.getName() + ".claims";
+
+    private final VerifiedTokenCache verifiedTokenCache;
     private final UserService userService;
     private final BlacklistTokenService blacklistTokenService;
 
@@ -36,21 +41,21 @@ public class JwtFilter extends OncePerRequestFilter {
                                     @NonNull FilterChain filterChain) throws ServletException, IOException {
         final String token = JwtParseUtil.getTokenFromRequest(request);
 
-        if (blacklistTokenService.isTokenExistInBlacklist(token)) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        if (token != null && jwtProvider.validateAccessToken(token)) {
-            Claims accessClaims = jwtProvider.getAccessClaims(token);
-            String username = accessClaims.getSubject();
-            UserDetails userDetails = userService.loadUserByUsername(username);
-            UsernamePasswordAuthenticationToken authenticationToken =
-                new UsernamePasswordAuthenticationToken(
-                    userDetails, null, userDetails.getAuthorities());
-            authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-            SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        if (token != null) {
+            verifiedTokenCache.parseAccessToken(token)
+                .filter(claims -> !blacklistTokenService.isBlacklisted(token, claims))
+                .ifPresent(claims -> authenticate(request, claims));
         }
         filterChain.doFilter(request, response);
     }
+
+    private void authenticate(HttpServletRequest request, Claims accessClaims) {
+        UserDetails userDetails = userService.loadUserByUsername(accessClaims.getSubject());
+        UsernamePasswordAuthenticationToken authenticationToken =
+            new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
+        authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        request.setAttribute(ACCESS_CLAIMS_ATTRIBUTE, accessClaims);
+    }
 }
@@ -1,11 +1,31 @@
 package com.alexander.smartchat.repository;
 
 import com.alexander.smartchat.entity.Chat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
 public interface ChatRepository extends JpaRepository<Chat, UUID> {
+
+    @Query("SELECT c.id FROM Chat c WHERE c.id > :after ORDER BY c.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Pageable pg);
+
+    @Query("SELECT c.id FROM Chat c JOIN c.users u WHERE u.id = :userId ORDER BY c.id")
+    List<UUID> findIdsByMember(@Param("userId") UUID userId);
+
+    @EntityGraph(attributePaths = "users")
+    @Query("SELECT c FROM Chat c WHERE c.id IN :ids")
+    List<Chat> findWithUsersByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT e.id FROM Chat e WHERE e.id IN :ids")
+    Set<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
 }
@@ -0,0 +1,32 @@
+package com.alexander.smartchat.repository;
+
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.dto.MessageSearchHitDto;
+import com.alexander.smartchat.entity.ChatMessage;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface MessageRepositoryCustom {
+    List<ChatMessage> insertIgnoringDuplicates(List<ChatMessage> messages);
+
+    Map<UUID, Long> findSenderStats(UUID chatId);
+
+    int reconcileSenderStats(UUID chatId);
+
+    List<MessageSearchHitDto> searchFullText(UUID chatId, String tsQuery, int limit, int offset);
+
+    long countFullText(UUID chatId, String tsQuery, CountMode countMode, int cap);
+
+    List<MessageSearchHitDto> searchSubstring(UUID chatId, String keyword, int limit, int offset);
+
+    long countSubstring(UUID chatId, String keyword, CountMode countMode, int cap);
+
+    List<UUID> findMostActiveChatIds(Instant since, int limit);
+
+    List<MessageResponseDto> findRecentByChatIds(Collection<UUID> chatIds, int perChat);
+}
@@ -0,0 +1,252 @@
+package com.alexander.smartchat.repository;
+
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.dto.MessageSearchHitDto;
+import com.alexander.smartchat.entity.ChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class MessageRepositoryCustomImpl implements MessageRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO chat_messages (id, chat_id, sender_id, text, sent_at) "
+        + "VALUES (?, ?, ?, ?, ?) "
+        + "ON CONFLICT (id) DO NOTHING";
+
+    private static final String INCREMENT_STATS_SQL = "INSERT INTO chat_sender_stats (chat_id, sender_id, message_count) "
+        + "VALUES (?, ?, ?) "
+        + "ON CONFLICT (chat_id, sender_id) DO UPDATE "
+        + "SET message_count = chat_sender_stats.message_count + EXCLUDED.message_count";
+
+    static final String SENDER_STATS_SQL = "SELECT sender_id, message_count FROM chat_sender_stats WHERE chat_id = ?";
+
+    private static final String LOCK_CHAT_SQL = "SELECT id FROM chats WHERE id = ? FOR UPDATE";
+
+    static final String RECONCILE_STATS_SQL = "WITH actual AS ("
+        + "    SELECT chat_id, sender_id, count(*) AS message_count FROM chat_messages "
+        + "    WHERE chat_id = ? AND sender_id IS NOT NULL GROUP BY chat_id, sender_id), "
+        + "fixed AS ("
+        + "    INSERT INTO chat_sender_stats (chat_id, sender_id, message_count) "
+        + "    SELECT chat_id, sender_id, message_count FROM actual "
+        + "    ON CONFLICT (chat_id, sender_id) DO UPDATE SET message_count = EXCLUDED.message_count "
+        + "    WHERE chat_sender_stats.message_count <> EXCLUDED.message_count "
+        + "    RETURNING 1), "
+        + "removed AS ("
+        + "    DELETE FROM chat_sender_stats s WHERE s.chat_id = ? "
+        + "    AND NOT EXISTS (SELECT 1 FROM actual a WHERE a.sender_id = s.sender_id) "
+        + "    RETURNING 1) "
+        + "SELECT (SELECT count(*) FROM fixed) + (SELECT count(*) FROM removed)";
+
+    static final String FULL_TEXT_SEARCH_SQL = "SELECT m.id, m.chat_id, m.sender_id, m.text, m.sent_at, hit.rank, "
+        + "ts_headline('simple', m.text, hit.query, "
+        + "'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MinWords=5, MaxWords=20') AS snippet "
+        + "FROM (SELECT id, query, ts_rank_cd(search_vector, query) AS rank "
+        + "      FROM chat_messages, to_tsquery('simple', ?) AS query "
+        + "      WHERE chat_id = ? AND search_vector @@ query "
+        + "      ORDER BY rank DESC, sent_at DESC, id DESC "
+        + "      LIMIT ? OFFSET ?) hit "
+        + "JOIN chat_messages m ON m.id = hit.id "
+        + "ORDER BY hit.rank DESC, m.sent_at DESC, m.id DESC";
+
+    static final String FULL_TEXT_WHERE = "chat_id = ? AND search_vector @@ to_tsquery('simple', ?)";
+
+    static final String SUBSTRING_SEARCH_SQL = "SELECT id, chat_id, sender_id, text, sent_at, "
+        + "similarity(text, ?) AS rank, NULL AS snippet "
+        + "FROM chat_messages "
+        + "WHERE chat_id = ? AND text ILIKE ? "
+        + "ORDER BY sent_at DESC, id DESC "
+        + "LIMIT ? OFFSET ?";
+
+    static final String SUBSTRING_WHERE = "chat_id = ? AND text ILIKE ?";
+
+    static final String EXACT_COUNT_SQL = "SELECT count(*) FROM chat_messages WHERE %s";
+
+    static final String CAPPED_COUNT_SQL = "SELECT count(*) FROM (SELECT 1 FROM chat_messages WHERE %s LIMIT ?) capped";
+
+    static final String ESTIMATE_SQL = "EXPLAIN (FORMAT JSON) SELECT 1 FROM chat_messages WHERE %s";
+
+    static final String MOST_ACTIVE_CHATS_SQL = "SELECT chat_id FROM chat_messages "
+        + "WHERE sent_at >= ? "
+        + "GROUP BY chat_id "
+        + "ORDER BY count(*) DESC "
+        + "LIMIT ?";
+
+    static final String RECENT_BY_CHATS_SQL = "SELECT m.id, m.chat_id, m.sender_id, m.text, m.sent_at "
+        + "FROM unnest(?::uuid[]) AS c(id) "
+        + "CROSS JOIN LATERAL ("
+        + "    SELECT id, chat_id, sender_id, text, sent_at FROM chat_messages "
+        + "    WHERE chat_id = c.id "
+        + "    ORDER BY sent_at DESC, id DESC "
+        + "    LIMIT ?) m "
+        + "ORDER BY m.chat_id, m.sent_at DESC, m.id DESC";
+
+    private static final ObjectMapper PLAN_READER = new ObjectMapper();
+
+    private static final RowMapper<MessageSearchHitDto> SEARCH_HIT_MAPPER = (rs, rowNum) -> new MessageSearchHitDto(
+        rs.getObject("id", UUID.class),
+        rs.getObject("chat_id", UUID.class),
+        rs.getObject("sender_id", UUID.class),
+        rs.getString("text"),
+        rs.getObject("sent_at", OffsetDateTime.class).toInstant(),
+        rs.getDouble("rank"),
+        rs.getString("snippet"));
+
+    private static final RowMapper<MessageResponseDto> MESSAGE_MAPPER = (rs, rowNum) -> new MessageResponseDto(
+        rs.getObject("id", UUID.class),
+        rs.getObject("chat_id", UUID.class),
+        rs.getObject("sender_id", UUID.class),
+        rs.getString("text"),
+        rs.getObject("sent_at", OffsetDateTime.class).toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public List<ChatMessage> insertIgnoringDuplicates(List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return List.of();
+        }
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, messages, messages.size(), (ps, message) -> {
+            ps.setObject(1, message.getId());
+            ps.setObject(2, message.getChat().getId());
+            ps.setObject(3, message.getSender().getId());
+            ps.setString(4, message.getText());
+            ps.setObject(5, OffsetDateTime.ofInstant(message.getSentAt(), ZoneOffset.UTC));
+        })[0];
+
+        List<ChatMessage> inserted = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            if (counts[i] != 0) {
+                inserted.add(messages.get(i));
+            }
+        }
+        incrementSenderStats(inserted);
+        return inserted;
+    }
+
+    private void incrementSenderStats(List<ChatMessage> inserted) {
+        Map<StatsKey, Long> counts = inserted.stream().collect(Collectors.groupingBy(
+            message -> new StatsKey(message.getChat().getId(), message.getSender().getId()),
+            TreeMap::new, Collectors.counting()));
+        if (counts.isEmpty()) {
+            return;
+        }
+        // одинаковый порядок строк во всех транзакциях исключает взаимные блокировки
+        jdbcTemplate.batchUpdate(INCREMENT_STATS_SQL, List.copyOf(counts.entrySet()), counts.size(), (ps, entry) -> {
+            ps.setObject(1, entry.getKey().chatId());
+            ps.setObject(2, entry.getKey().senderId());
+            ps.setLong(3, entry.getValue());
+        });
+    }
+
+    @Override
+    public Map<UUID, Long> findSenderStats(UUID chatId) {
+        Map<UUID, Long> stats = new HashMap<>();
+        jdbcTemplate.query(SENDER_STATS_SQL, rs -> {
+            stats.put(rs.getObject("sender_id", UUID.class), rs.getLong("message_count"));
+        }, chatId);
+        return stats;
+    }
+
+    @Override
+    @Transactional
+    public int reconcileSenderStats(UUID chatId) {
+        // блокировка чата ждет транзакции, которые сейчас вставляют в него сообщения,
+        // и не дает начаться новым, пока счетчики пересчитываются
+        if (jdbcTemplate.queryForList(LOCK_CHAT_SQL, UUID.class, chatId).isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.queryForObject(RECONCILE_STATS_SQL, Integer.class, chatId, chatId);
+    }
+
+    @Override
+    public List<MessageSearchHitDto> searchFullText(UUID chatId, String tsQuery, int limit, int offset) {
+        return jdbcTemplate.query(FULL_TEXT_SEARCH_SQL, SEARCH_HIT_MAPPER, tsQuery, chatId, limit, offset);
+    }
+
+    @Override
+    public long countFullText(UUID chatId, String tsQuery, CountMode countMode, int cap) {
+        return count(FULL_TEXT_WHERE, countMode, cap, chatId, tsQuery);
+    }
+
+    @Override
+    public List<MessageSearchHitDto> searchSubstring(UUID chatId, String keyword, int limit, int offset) {
+        return jdbcTemplate.query(SUBSTRING_SEARCH_SQL, SEARCH_HIT_MAPPER,
+            keyword, chatId, likePattern(keyword), limit, offset);
+    }
+
+    @Override
+    public long countSubstring(UUID chatId, String keyword, CountMode countMode, int cap) {
+        return count(SUBSTRING_WHERE, countMode, cap, chatId, likePattern(keyword));
+    }
+
+    @Override
+    public List<UUID> findMostActiveChatIds(Instant since, int limit) {
+        return jdbcTemplate.queryForList(MOST_ACTIVE_CHATS_SQL, UUID.class, since.atOffset(ZoneOffset.UTC), limit);
+    }
+
+    @Override
+    public List<MessageResponseDto> findRecentByChatIds(Collection<UUID> chatIds, int perChat) {
+        if (chatIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(RECENT_BY_CHATS_SQL, MESSAGE_MAPPER, chatIds.toArray(UUID[]::new), perChat);
+    }
+
+    private long count(String where, CountMode countMode, int cap, Object... args) {
+        return switch (countMode) {
+            case EXACT -> jdbcTemplate.queryForObject(EXACT_COUNT_SQL.formatted(where), Long.class, args);
+            case CAPPED -> jdbcTemplate.queryForObject(CAPPED_COUNT_SQL.formatted(where), Long.class,
+                append(args, cap + 1));
+            case ESTIMATED -> planRows(jdbcTemplate.queryForObject(ESTIMATE_SQL.formatted(where), String.class, args));
+        };
+    }
+
+    private static long planRows(String plan) {
+        try {
+            return PLAN_READER.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось разобрать план запроса", e);
+        }
+    }
+
+    private static Object[] append(Object[] args, Object last) {
+        Object[] result = Arrays.copyOf(args, args.length + 1);
+        result[args.length] = last;
+        return result;
+    }
+
+    private static String likePattern(String keyword) {
+        return "%" + keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private record StatsKey(UUID chatId, UUID senderId) implements Comparable<StatsKey> {
+
+        private static final Comparator<StatsKey> ORDER =
+            Comparator.comparing(StatsKey::chatId).thenComparing(StatsKey::senderId);
+
+        @Override
+        public int compareTo(StatsKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
@@ -43,7 +43,7 @@ public class AuthService {
             .orElseThrow(() -> new AuthException("Пользователь не был найден"));
 
         if (passwordEncoder.matches(loginRequest.password(), user.getPassword())) {
-            final String accessToken = jwtProvider.generateAccessToken(user);
+            final String accessToken = jwtProvider.generateAccessToken(user, tokenService.getTokenVersion(user.getUsername()));
             final String refreshToken = jwtProvider.generateRefreshToken(user);
 
             tokenService.saveUserToken(user.getUsername(), new JwtResponse(accessToken, refreshToken));
@@ -54,21 +54,17 @@ public class AuthService {
     }
 
     public LoginResponse getAccessToken(@NonNull String refreshToken) {
-        if (!jwtProvider.validateRefreshToken(refreshToken)) {
-            throw new AuthException("Токен обновления недействителен или истек");
-        }
-        if (jwtProvider.validateRefreshToken(refreshToken)) {
-            Claims claims = jwtProvider.getRefreshClaims(refreshToken);
-            String username = claims.getSubject();
-            JwtResponse userToken = tokenService.getUserToken(username);
+        Claims claims = jwtProvider.parseRefreshToken(refreshToken)
+            .orElseThrow(() -> new AuthException("Токен обновления недействителен или истек"));
+        String username = claims.getSubject();
+        JwtResponse userToken = tokenService.getUserToken(username);
 
-            if (userToken != null && userToken.refreshToken().equals(refreshToken)) {
-                User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AuthException("Пользователь не был найден"));
+        if (userToken != null && userToken.refreshToken().equals(refreshToken)) {
+            User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new AuthException("Пользователь не был найден"));
 
-                final String accessToken = jwtProvider.generateAccessToken(user);
-                return new LoginResponse(accessToken, null);
-            }
+            final String accessToken = jwtProvider.generateAccessToken(user, tokenService.getTokenVersion(username));
+            return new LoginResponse(accessToken, null);
         }
         return new LoginResponse(null, null);
     }
@@ -1,14 +1,22 @@
 package com.alexander.smartchat.service;
 
-import com.alexander.smartchat.dto.JwtResponse;
+import com.alexander.smartchat.exception.AuthException;
 import com.alexander.smartchat.service.jwt.JwtProvider;
+import com.alexander.smartchat.service.jwt.VerifiedTokenCache;
+import com.alexander.smartchat.service.redis.RevokedTokenFilter;
+import com.alexander.smartchat.util.JwtParseUtil;
 import io.jsonwebtoken.Claims;
 import lombok.Getter;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
 @Slf4j
 @Getter
 @Service
@@ -17,34 +25,76 @@ public class BlacklistTokenService {
 
     private final JwtProvider jwtProvider;
     private final TokenService tokenService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final RevokedTokenFilter revokedTokenFilter;
 
-    public boolean isTokenExistInBlacklist(String token) {
-        log.info("Проверка, существует ли токен в черном списке: {}", token);
-        if (token == null) {
-            log.info("Токен НЕ занесен в черный список");
+    /**
+     * Проверяет токен по черному списку, используя уже проверенные фильтром claims без повторного разбора.
+     * В Redis идет только токен, который локальный фильтр отозванных токенов не может исключить.
+     */
+    public boolean isBlacklisted(@NonNull String token, @NonNull Claims claims) {
+        String tokenId = tokenId(token, claims);
+        String username = claims.getSubject();
+        if (!revokedTokenFilter.mightBeRevoked(JwtParseUtil.digest(tokenId))
+            && !revokedTokenFilter.mightBeRevoked(JwtParseUtil.digest(sessionsId(username)))) {
             return false;
         }
+        boolean isRevoked = tokenService.isRevoked(tokenId, username, tokenVersion(claims));
 
+        log.debug("Токен пользователя {} {}занесен в черный список", username, isRevoked ? "" : "НЕ ");
+        return isRevoked;
+    }
+
+    public void saveTokenBlackList(String bearer) {
+        String token = stripBearer(bearer);
         Claims claims = jwtProvider.getAccessClaims(token);
-        String username = claims.getSubject();
+        String tokenId = tokenId(token, claims);
+        Instant expiresAt = claims.getExpiration().toInstant();
 
-        boolean isExists = tokenService.getTokenBlackList(username)
-            .map(JwtResponse::accessToken)
-            .filter(accessToken -> accessToken.equals(token))
-            .isPresent();
+        tokenService.revokeToken(tokenId, Duration.between(Instant.now(), expiresAt));
+        revokedTokenFilter.revoke(JwtParseUtil.digest(tokenId), expiresAt);
+        verifiedTokenCache.invalidate(token);
+    }
 
-        log.info("Токен {} занесен в черный список", isExists ? "" : "НЕ");
-        return isExists;
+    /**
+     * Отзывает все сессии пользователя: уже выданные access-токены перестают приниматься,
+     * а refresh-токен удаляется, так что продолжить работу можно только после нового входа.
+     * Маршрут открыт без аутентификации, поэтому отозванный токен проверяется здесь напрямую по Redis.
+     */
+    public void revokeAllSessions(String bearer) {
+        String token = stripBearer(bearer);
+        Claims claims = jwtProvider.getAccessClaims(token);
+        String username = claims.getSubject();
+        if (tokenService.isRevoked(tokenId(token, claims), username, tokenVersion(claims))) {
+            throw new AuthException("Токен отозван");
+        }
+
+        long version = tokenService.incrementTokenVersion(username);
+        tokenService.removeUserToken(username);
+        revokedTokenFilter.revoke(JwtParseUtil.digest(sessionsId(username)),
+            Instant.now().plus(jwtProvider.accessTokenLifetime()));
+        verifiedTokenCache.invalidate(token);
+        log.info("Все сессии пользователя {} отозваны, версия токенов {}", username, version);
     }
 
-    public void saveTokenBlackList(String bearer) {
-        String token = bearer;
+    private static String stripBearer(String bearer) {
         if (StringUtils.hasText(bearer) && bearer.startsWith("Bearer ")) {
-            token = bearer.substring(7);
+            return bearer.substring(7);
         }
+        return bearer;
+    }
 
-        Claims claims = jwtProvider.getAccessClaims(token);
-        String username = claims.getSubject();
-        tokenService.saveTokenBlackList(username, new JwtResponse(token, null));
+    private static String tokenId(String token, Claims claims) {
+        String jti = claims.getId();
+        return jti != null ? jti : Base64.getEncoder().encodeToString(JwtParseUtil.digest(token));
+    }
+
+    private static String sessionsId(String username) {
+        return "user:" + username;
+    }
+
+    private static long tokenVersion(Claims claims) {
+        Long version = claims.get(JwtProvider.TOKEN_VERSION_CLAIM, Long.class);
+        return version == null ? 0 : version;
     }
 }
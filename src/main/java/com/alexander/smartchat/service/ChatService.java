@@ -7,6 +7,7 @@ import com.alexander.smartchat.entity.User;
 import com.alexander.smartchat.mapper.ChatMapper;
 import com.alexander.smartchat.repository.ChatRepository;
 import com.alexander.smartchat.repository.UserRepository;
+import com.alexander.smartchat.service.redis.ChatMembershipCache;
 import com.alexander.smartchat.service.redis.RedisCacheService;
 import lombok.RequiredArgsConstructor;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
@@ -15,8 +16,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,11 +32,25 @@ public class ChatService {
     private final UserRepository userRepository;
     private final ChatMapper chatMapper;
     private final RedisCacheService redisCacheService;
+    private final ChatMembershipCache chatMembershipCache;
+    private final KnownEntityIds knownEntityIds;
 
-    public List<ChatResponseDto> getUserChats(UUID userId) {
-        return chatRepository.findAll().stream()
-            .filter(chat -> chat.getUsers().stream()
-                .anyMatch(user -> user.getId().equals(userId)))
+    private static final int MAX_PAGE_SIZE = 200;
+
+    public List<ChatResponseDto> getUserChats(UUID userId, int page, int size) {
+        List<UUID> chatIds = chatMembershipCache.getChatIds(userId, () -> chatRepository.findIdsByMember(userId));
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long from = (long) Math.max(0, page) * pageSize;
+        if (from >= chatIds.size()) {
+            return List.of();
+        }
+        List<UUID> pageIds = chatIds.subList((int) from, (int) Math.min(chatIds.size(), from + pageSize));
+
+        Map<UUID, Chat> chats = chatRepository.findWithUsersByIdIn(pageIds).stream()
+            .collect(Collectors.toMap(Chat::getId, Function.identity()));
+        return pageIds.stream()
+            .map(chats::get)
+            .filter(Objects::nonNull)
             .map(chatMapper::toDto)
             .toList();
     }
@@ -41,7 +60,9 @@ public class ChatService {
         Chat chat = chatMapper.toEntity(requestDto);
         Set<User> users = new HashSet<>(userRepository.findAllById(requestDto.userIds()));
         chat.setUsers(users);
-        return chatMapper.toDto(chatRepository.save(chat));
+        Chat saved = chatRepository.save(chat);
+        chatMembershipCache.evictAfterCommit(users.stream().map(User::getId).toList());
+        return chatMapper.toDto(saved);
     }
 
     @Transactional
@@ -51,13 +72,17 @@ public class ChatService {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new ResourceNotFoundException("Пользователь с id " + userId + " не был найден"));
         chat.getUsers().add(user);
+        chatMembershipCache.evictAfterCommit(List.of(userId));
     }
 
     @Transactional
     public void deleteChat(UUID chatId) {
         Chat chat = chatRepository.findById(chatId)
             .orElseThrow(() -> new ResourceNotFoundException("Чат с id " + chatId + " не был найден"));
+        List<UUID> memberIds = chat.getUsers().stream().map(User::getId).toList();
         chatRepository.delete(chat);
+        knownEntityIds.evictChatAfterCommit(chatId);
         redisCacheService.clearChatCache(chatId);
+        chatMembershipCache.evictAfterCommit(memberIds);
     }
 }
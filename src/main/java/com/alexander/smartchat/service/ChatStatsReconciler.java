@@ -0,0 +1,58 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.repository.ChatRepository;
+import com.alexander.smartchat.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Фоновая сверка счетчиков сообщений по отправителям с таблицей сообщений.
+ * Чаты обходятся постранично по идентификатору, каждый пересчитывается в своей транзакции.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Setter
+public class ChatStatsReconciler {
+
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final ChatRepository chatRepository;
+    private final MessageRepository messageRepository;
+
+    @Value("${chat.stats.reconcile-batch-size}")
+    private int batchSize;
+
+    @Scheduled(initialDelayString = "${chat.stats.reconcile-interval}",
+        fixedDelayString = "${chat.stats.reconcile-interval}")
+    public void reconcile() {
+        int chats = 0;
+        int corrected = 0;
+        UUID after = MIN_ID;
+        List<UUID> page;
+        do {
+            page = chatRepository.findIdsAfter(after, PageRequest.of(0, batchSize));
+            for (UUID chatId : page) {
+                corrected += messageRepository.reconcileSenderStats(chatId);
+            }
+            chats += page.size();
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1);
+            }
+        } while (page.size() == batchSize);
+
+        if (corrected > 0) {
+            log.warn("Сверка статистики: проверено {} чатов, исправлено {} счетчиков", chats, corrected);
+        } else {
+            log.info("Сверка статистики: проверено {} чатов, расхождений нет", chats);
+        }
+    }
+}
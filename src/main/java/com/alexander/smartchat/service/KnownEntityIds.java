@@ -0,0 +1,97 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.repository.ChatRepository;
+import com.alexander.smartchat.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Идентификаторы чатов и пользователей, существование которых уже проверено. Промахи проверяются
+ * одним запросом на пачку, отсутствующие идентификаторы не кешируются. Удаление чата или пользователя
+ * сбрасывает запись на этом экземпляре после коммита; на остальных устаревшую запись отсекает внешний ключ при вставке.
+ */
+@Component
+public class KnownEntityIds {
+
+    private final ChatRepository chatRepository;
+    private final UserRepository userRepository;
+    private final Cache<UUID, Boolean> chats;
+    private final Cache<UUID, Boolean> users;
+
+    public KnownEntityIds(ChatRepository chatRepository,
+                          UserRepository userRepository,
+                          @Value("${kafka.consumer.known-ids.ttl}") Duration ttl,
+                          @Value("${kafka.consumer.known-ids.max-size}") long maxSize) {
+        this.chatRepository = chatRepository;
+        this.userRepository = userRepository;
+        this.chats = Caffeine.newBuilder().expireAfterWrite(ttl).maximumSize(maxSize).build();
+        this.users = Caffeine.newBuilder().expireAfterWrite(ttl).maximumSize(maxSize).build();
+    }
+
+    public boolean chatExists(UUID chatId) {
+        return existingChats(Set.of(chatId)).contains(chatId);
+    }
+
+    public boolean userExists(UUID userId) {
+        return existingUsers(Set.of(userId)).contains(userId);
+    }
+
+    public Set<UUID> existingChats(Collection<UUID> chatIds) {
+        return resolve(chats, chatIds, chatRepository::findExistingIds);
+    }
+
+    public Set<UUID> existingUsers(Collection<UUID> userIds) {
+        return resolve(users, userIds, userRepository::findExistingIds);
+    }
+
+    public void evictChat(UUID chatId) {
+        chats.invalidate(chatId);
+    }
+
+    public void evictUser(UUID userId) {
+        users.invalidate(userId);
+    }
+
+    /**
+     * Сбрасывает запись только после коммита удаления: до него потребитель еще видит чат в базе
+     * и успел бы закешировать его заново.
+     */
+    public void evictChatAfterCommit(UUID chatId) {
+        afterCommit(() -> evictChat(chatId));
+    }
+
+    public void evictUserAfterCommit(UUID userId) {
+        afterCommit(() -> evictUser(userId));
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+
+    private static Set<UUID> resolve(Cache<UUID, Boolean> cache, Collection<UUID> ids,
+                                     Function<Collection<UUID>, Set<UUID>> loader) {
+        return cache.getAll(ids, missing -> loader.apply(Set.copyOf(missing)).stream()
+                .collect(Collectors.toMap(Function.identity(), id -> Boolean.TRUE)))
+            .keySet();
+    }
+}
@@ -1,55 +1,190 @@
 package com.alexander.smartchat.service;
 
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.MessageCursor;
+import com.alexander.smartchat.dto.MessageHistoryDto;
 import com.alexander.smartchat.dto.MessageResponseDto;
 import com.alexander.smartchat.dto.MessageSearchDto;
+import com.alexander.smartchat.dto.MessageSearchHitDto;
 import com.alexander.smartchat.dto.MessageStatsDto;
+import com.alexander.smartchat.dto.SearchMode;
+import com.alexander.smartchat.entity.ChatMessage;
+import com.alexander.smartchat.exception.InvalidCursorException;
 import com.alexander.smartchat.mapper.MessageMapper;
 import com.alexander.smartchat.repository.MessageRepository;
+import com.alexander.smartchat.service.redis.RecentMessages;
+import com.alexander.smartchat.service.redis.RedisCacheService;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Setter
 public class MessageService {
 
     private final MessageRepository messageRepository;
     private final MessageMapper messageMapper;
+    private final SearchCountCache searchCountCache;
+    private final RedisCacheService redisCacheService;
 
-    public List<MessageResponseDto> getMessages(UUID chatId, int limit) {
-        Pageable pageable = PageRequest.of(0, limit, Sort.by("sentAt").descending());
-        return messageRepository.findByChatIdOrderBySentAtDesc(chatId, pageable)
-            .stream()
+    /**
+     * Загрузки последних сообщений из базы, которые сейчас выполняются: параллельные промахи по одному чату ждут одну загрузку.
+     */
+    private final Map<UUID, CompletableFuture<List<MessageResponseDto>>> recentLoads = new ConcurrentHashMap<>();
+
+    @Value("${chat.search.count-cap}")
+    private int countCap;
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int SNIPPET_CONTEXT = 40;
+
+    public MessageHistoryDto getMessages(UUID chatId, int limit, String before, String after) {
+        if (before != null && after != null) {
+            throw new InvalidCursorException("Нельзя одновременно указывать before и after");
+        }
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Pageable pageable = PageRequest.of(0, size + 1);
+
+        List<ChatMessage> rows;
+        if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            rows = messageRepository.findNewer(chatId, cursor.sentAt(), cursor.id(), pageable);
+        } else if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            rows = messageRepository.findOlder(chatId, cursor.sentAt(), cursor.id(), pageable);
+        } else {
+            rows = messageRepository.findByChatIdOrderBySentAtDescIdDesc(chatId, pageable);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<MessageResponseDto> messages = new ArrayList<>(rows.subList(0, Math.min(size, rows.size())).stream()
             .map(messageMapper::toDto)
-            .toList();
+            .toList());
+        if (after != null) {
+            Collections.reverse(messages);
+        }
+        if (messages.isEmpty()) {
+            return new MessageHistoryDto(messages, null, null);
+        }
+
+        boolean hasOlder = after != null || hasMore;
+        boolean hasNewer = after != null ? hasMore : before != null;
+        return new MessageHistoryDto(messages,
+            hasOlder ? MessageCursor.of(messages.get(messages.size() - 1)).encode() : null,
+            hasNewer ? MessageCursor.of(messages.get(0)).encode() : null);
     }
 
-    public MessageSearchDto search(UUID chatId, String keyword, int limit) {
-        Pageable pageable = PageRequest.of(0, limit, Sort.by("sentAt").descending());
-        List<MessageResponseDto> messageResponseDtos = messageRepository
-            .findByChatIdAndTextContainingIgnoreCase(chatId, keyword, pageable)
-            .stream()
-            .map(messageMapper::toDto)
-            .toList();
+    public List<MessageResponseDto> getRecentMessages(UUID chatId, int limit) {
+        int size = Math.max(1, Math.min(limit, redisCacheService.recentCacheSize()));
+        RecentMessages cached = redisCacheService.getRecent(chatId);
+        if (cached.messages().size() >= size || cached.loaded()) {
+            return firstN(cached.messages(), size);
+        }
+
+        CompletableFuture<List<MessageResponseDto>> load = new CompletableFuture<>();
+        CompletableFuture<List<MessageResponseDto>> inFlight = recentLoads.putIfAbsent(chatId, load);
+        if (inFlight != null) {
+            return firstN(inFlight.join(), size);
+        }
+        try {
+            List<MessageResponseDto> loaded = messageRepository.findByChatIdOrderBySentAtDescIdDesc(chatId,
+                    PageRequest.of(0, redisCacheService.recentCacheSize())).stream()
+                .map(messageMapper::toDto)
+                .toList();
+            redisCacheService.replaceRecentMessages(chatId, cached, loaded);
+            load.complete(loaded);
+            return firstN(loaded, size);
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            recentLoads.remove(chatId, load);
+        }
+    }
+
+    private static <T> List<T> firstN(List<T> list, int n) {
+        return list.size() > n ? list.subList(0, n) : list;
+    }
+
+    public MessageSearchDto search(UUID chatId, String keyword, int limit, int page, SearchMode mode, CountMode countMode) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int offset = Math.max(0, page) * size;
+        if (mode == SearchMode.SUBSTRING) {
+            if (keyword.isBlank()) {
+                return new MessageSearchDto(List.of(), 0L, CountMode.EXACT, false);
+            }
+            List<MessageSearchHitDto> hits = messageRepository.searchSubstring(chatId, keyword, size, offset).stream()
+                .map(hit -> withSnippet(hit, keyword))
+                .toList();
+            return withTotal(hits, size, offset, countMode, () -> searchCountCache.get(chatId, mode, keyword, countMode,
+                () -> messageRepository.countSubstring(chatId, keyword, countMode, countCap)));
+        }
+
+        String tsQuery = toPrefixTsQuery(keyword);
+        if (tsQuery.isEmpty()) {
+            return new MessageSearchDto(List.of(), 0L, CountMode.EXACT, false);
+        }
+        List<MessageSearchHitDto> hits = messageRepository.searchFullText(chatId, tsQuery, size, offset);
+        return withTotal(hits, size, offset, countMode, () -> searchCountCache.get(chatId, mode, tsQuery, countMode,
+            () -> messageRepository.countFullText(chatId, tsQuery, countMode, countCap)));
+    }
+
+    private MessageSearchDto withTotal(List<MessageSearchHitDto> hits, int size, int offset,
+                                       CountMode countMode, LongSupplier counter) {
+        if (hits.size() < size && (!hits.isEmpty() || offset == 0)) {
+            return new MessageSearchDto(hits, (long) offset + hits.size(), CountMode.EXACT, false);
+        }
+        long seen = (long) offset + hits.size();
+        long total = counter.getAsLong();
+        if (countMode == CountMode.CAPPED && total > countCap) {
+            return new MessageSearchDto(hits, Math.max(seen, countCap), countMode, true);
+        }
+        return new MessageSearchDto(hits, Math.max(seen, total), countMode, false);
+    }
+
+    static String toPrefixTsQuery(String keyword) {
+        return Arrays.stream(NON_WORD.split(keyword.toLowerCase(Locale.ROOT)))
+            .filter(term -> !term.isEmpty())
+            .map(term -> term + ":*")
+            .collect(Collectors.joining(" & "));
+    }
 
-        Long total = messageRepository.countByChatIdAndTextContainingIgnoreCase(chatId, keyword);
-        return new MessageSearchDto(messageResponseDtos, total);
+    private static MessageSearchHitDto withSnippet(MessageSearchHitDto hit, String keyword) {
+        String text = hit.text();
+        int start = text.toLowerCase(Locale.ROOT).indexOf(keyword.toLowerCase(Locale.ROOT));
+        if (start < 0) {
+            return hit;
+        }
+        int end = start + keyword.length();
+        int from = Math.max(0, start - SNIPPET_CONTEXT);
+        int to = Math.min(text.length(), end + SNIPPET_CONTEXT);
+        String snippet = (from > 0 ? "..." : "") + text.substring(from, start)
+            + "<mark>" + text.substring(start, end) + "</mark>"
+            + text.substring(end, to) + (to < text.length() ? "..." : "");
+        return new MessageSearchHitDto(hit.id(), hit.chatId(), hit.senderId(), text, hit.sentAt(), hit.rank(), snippet);
     }
 
     public MessageStatsDto getStats(UUID chatId) {
-        Long total = messageRepository.countByChatId(chatId);
-        Map<UUID, Long> perUser = messageRepository.countPerUserInChat(chatId).stream()
-            .collect(Collectors.toMap(
-                tuple -> tuple.get("sender", UUID.class),
-                tuple -> tuple.get("count", Long.class)
-            ));
+        Map<UUID, Long> perUser = messageRepository.findSenderStats(chatId);
+        long total = perUser.values().stream().mapToLong(Long::longValue).sum();
         return new MessageStatsDto(total, perUser);
     }
 }
@@ -0,0 +1,37 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.SearchMode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Кратковременный кеш итогов поиска: при листании страниц одного и того же запроса
+ * количество совпадений считается один раз, а не на каждой странице.
+ */
+@Component
+public class SearchCountCache {
+
+    private final Cache<Key, Long> counts;
+
+    public SearchCountCache(@Value("${chat.search.count-cache-ttl}") Duration ttl,
+                            @Value("${chat.search.count-cache-max-size}") long maxSize) {
+        this.counts = Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    public long get(UUID chatId, SearchMode mode, String query, CountMode countMode, LongSupplier counter) {
+        return counts.get(new Key(chatId, mode, query, countMode), key -> counter.getAsLong());
+    }
+
+    private record Key(UUID chatId, SearchMode mode, String query, CountMode countMode) {
+    }
+}
@@ -3,31 +3,76 @@ package com.alexander.smartchat.service;
 import com.alexander.smartchat.dto.JwtResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.util.List;
 
+/**
+ * Токены пользователей в Redis. Отозванный токен хранится ключом {@code revoked:{jti}} ровно до своего истечения,
+ * а отзыв всех сессий пользователя увеличивает его версию токенов: токены со старой версией считаются отозванными.
+ */
 @Service
 @RequiredArgsConstructor
 public class TokenService {
 
+    private static final String USER_TOKENS_KEY = "user_tokens";
+
     private final RedisTemplate<String, JwtResponse> tokenRedisTemplate;
 
-    private final RedisTemplate<String, JwtResponse> blacklistRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private static String revokedKey(String tokenId) {
+        return "revoked:" + tokenId;
+    }
+
+    private static String tokenVersionKey(String username) {
+        return "user:" + username + ":token-version";
+    }
 
-    public void saveTokenBlackList(String username, JwtResponse jwtResponse) {
-        blacklistRedisTemplate.opsForValue().set(username, jwtResponse);
+    public void revokeToken(String tokenId, Duration remainingLifetime) {
+        if (remainingLifetime.isNegative() || remainingLifetime.isZero()) {
+            return;
+        }
+        stringRedisTemplate.opsForValue().set(revokedKey(tokenId), "1", remainingLifetime);
     }
 
-    public Optional<JwtResponse> getTokenBlackList(String username) {
-        return Optional.ofNullable(blacklistRedisTemplate.opsForValue().get(username));
+    /**
+     * Проверяет отзыв токена и его версию одним запросом к Redis.
+     */
+    public boolean isRevoked(String tokenId, String username, long tokenVersion) {
+        List<String> values = stringRedisTemplate.opsForValue()
+            .multiGet(List.of(revokedKey(tokenId), tokenVersionKey(username)));
+        if (values == null) {
+            return false;
+        }
+        if (values.get(0) != null) {
+            return true;
+        }
+        String currentVersion = values.get(1);
+        return currentVersion != null && tokenVersion < Long.parseLong(currentVersion);
+    }
+
+    public long getTokenVersion(String username) {
+        String version = stringRedisTemplate.opsForValue().get(tokenVersionKey(username));
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    public long incrementTokenVersion(String username) {
+        Long version = stringRedisTemplate.opsForValue().increment(tokenVersionKey(username));
+        return version == null ? 0 : version;
     }
 
     public void saveUserToken(String userId, JwtResponse jwtResponse) {
-        tokenRedisTemplate.opsForHash().put("user_tokens", userId, jwtResponse);
+        tokenRedisTemplate.opsForHash().put(USER_TOKENS_KEY, userId, jwtResponse);
     }
 
     public JwtResponse getUserToken(String userId) {
-        return (JwtResponse) tokenRedisTemplate.opsForHash().get("user_tokens", userId);
+        return (JwtResponse) tokenRedisTemplate.opsForHash().get(USER_TOKENS_KEY, userId);
+    }
+
+    public void removeUserToken(String userId) {
+        tokenRedisTemplate.opsForHash().delete(USER_TOKENS_KEY, userId);
     }
 }
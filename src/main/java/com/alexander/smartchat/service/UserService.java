@@ -7,12 +7,14 @@ import com.alexander.smartchat.exception.ResourceNotFoundException;
 import com.alexander.smartchat.mapper.UserMapper;
 import com.alexander.smartchat.repository.UserRepository;
 import com.alexander.smartchat.security.UserDetailsImpl;
+import com.alexander.smartchat.service.redis.UserDetailsCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -28,13 +30,25 @@ public class UserService implements UserDetailsService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final KnownEntityIds knownEntityIds;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public UserDetails loadUserByUsername(final String username) throws UsernameNotFoundException {
+        return userDetailsCache.get(username, this::findUserDetails);
+    }
+
+    private UserDetails findUserDetails(String username) {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new UsernameNotFoundException("Аккаунт не был найден: " + username));
 
-        return new UserDetailsImpl(user);
+        return new UserDetailsImpl(User.builder()
+            .id(user.getId())
+            .username(user.getUsername())
+            .password(user.getPassword())
+            .role(user.getRole())
+            .build());
     }
 
     public List<UserResponseDto> getAll() {
@@ -67,5 +81,7 @@ public class UserService implements UserDetailsService {
         User user = userRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Пользователь с id " + id + " не был найден"));
         userRepository.delete(user);
+        knownEntityIds.evictUserAfterCommit(id);
+        userDetailsCache.evictAfterCommit(user.getUsername());
     }
 }
@@ -0,0 +1,83 @@
+package com.alexander.smartchat.service.analytics;
+
+import com.alexander.smartchat.dto.ActivityResolution;
+import com.alexander.smartchat.dto.ActivityStatsDto;
+import com.alexander.smartchat.dto.MessageRequestDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Setter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Потоковая агрегация активности чатов прямо из топика сообщений, без обращений к базе.
+ * Каждый экземпляр читает топик собственной группой потребителей и видит весь поток,
+ * поэтому любой под отвечает за все чаты. Состояние живет в памяти и после рестарта набирается заново,
+ * так что группа одноразовая: смещения не фиксируются, и пустая группа удаляется брокером сразу после остановки.
+ * Кеш чатов ограничен примерным объемом памяти, а не числом чатов: активный чат весит на порядки больше тихого.
+ */
+@Service
+public class ActivityAggregator {
+
+    private static final String LISTENER_ID = "chat-activity";
+
+    private final Cache<UUID, ChatActivity> chats;
+    private final ChatActivity global;
+    private final int chatHllPrecision;
+    private final int topCapacity;
+
+    @Setter
+    private Clock clock = Clock.systemUTC();
+
+    public ActivityAggregator(@Value("${chat.activity.max-weight}") long maxWeight,
+                              @Value("${chat.activity.chat-hll-precision}") int chatHllPrecision,
+                              @Value("${chat.activity.global-hll-precision}") int globalHllPrecision,
+                              @Value("${chat.activity.top-capacity}") int topCapacity) {
+        this.chats = Caffeine.newBuilder()
+            .maximumWeight(maxWeight)
+            .weigher((UUID chatId, ChatActivity activity) -> activity.weight())
+            .expireAfterAccess(Duration.ofMillis(
+                ActivityResolution.DAY.bucketMillis() * ActivityResolution.DAY.retainedBuckets()))
+            .build();
+        this.global = new ChatActivity(globalHllPrecision, topCapacity);
+        this.chatHllPrecision = chatHllPrecision;
+        this.topCapacity = topCapacity;
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "${kafka.topic.name}", groupId = "smartchat-activity-${random.uuid}",
+        containerFactory = "activityKafkaListenerContainerFactory", autoStartup = "${kafka.consumer.activity.enabled}",
+        properties = "auto.offset.reset=${kafka.consumer.activity.offset-reset}")
+    public void consume(List<ConsumerRecord<String, MessageRequestDto>> records) {
+        for (ConsumerRecord<String, MessageRequestDto> record : records) {
+            MessageRequestDto dto = record.value();
+            if (dto != null && dto.chatId() != null && dto.senderId() != null) {
+                record(dto.chatId(), dto.senderId(), record.timestamp());
+            }
+        }
+    }
+
+    public void record(UUID chatId, UUID senderId, long epochMillis) {
+        global.record(epochMillis, senderId);
+        ChatActivity activity = chats.get(chatId, id -> new ChatActivity(chatHllPrecision, topCapacity));
+        if (activity.record(epochMillis, senderId)) {
+            chats.asMap().replace(chatId, activity, activity);
+        }
+    }
+
+    public ActivityStatsDto getActivity(UUID chatId, ActivityResolution resolution, int buckets, int top) {
+        ChatActivity activity = chatId == null ? global : chats.getIfPresent(chatId);
+        if (activity == null) {
+            activity = new ChatActivity(chatHllPrecision, topCapacity);
+        }
+        ActivityWindow.Snapshot snapshot = activity.snapshot(resolution, clock.millis(), buckets, Math.max(0, top));
+        return new ActivityStatsDto(chatId, resolution, snapshot.buckets(), snapshot.messages(),
+            snapshot.activeSenders(), snapshot.topSenders());
+    }
+}
@@ -0,0 +1,126 @@
+package com.alexander.smartchat.service.analytics;
+
+import com.alexander.smartchat.dto.ActivityBucketDto;
+import com.alexander.smartchat.dto.ActivityResolution;
+import com.alexander.smartchat.dto.TopSenderDto;
+import com.alexander.smartchat.util.HyperLogLog;
+import com.alexander.smartchat.util.SpaceSaving;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Кольцо временных корзин одного разрешения. Слот переиспользуется, когда в него попадает более новая корзина;
+ * скетчи отправителей создаются только для корзин, в которые что-то пришло.
+ */
+final class ActivityWindow {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int WINDOW_OVERHEAD = 128;
+    private static final int SLOT_OVERHEAD = 24;
+    private static final int SKETCH_OVERHEAD = 160;
+    private static final int TOP_SLOT_BYTES = 32;
+
+    private final ActivityResolution resolution;
+    private final int hllPrecision;
+    private final int topCapacity;
+
+    private final long[] bucketIds;
+    private final long[] counts;
+    private final HyperLogLog[] senders;
+    private final SpaceSaving[] topSenders;
+    private long latestBucket = EMPTY;
+
+    ActivityWindow(ActivityResolution resolution, int hllPrecision, int topCapacity) {
+        int size = resolution.retainedBuckets();
+        this.resolution = resolution;
+        this.hllPrecision = hllPrecision;
+        this.topCapacity = topCapacity;
+        this.bucketIds = new long[size];
+        this.counts = new long[size];
+        this.senders = new HyperLogLog[size];
+        this.topSenders = new SpaceSaving[size];
+        Arrays.fill(bucketIds, EMPTY);
+    }
+
+    /**
+     * Учитывает сообщение и возвращает true, если под него пришлось выделить память,
+     * то есть вес окна вырос.
+     */
+    boolean record(long epochMillis, UUID senderId) {
+        long bucket = Math.floorDiv(epochMillis, resolution.bucketMillis());
+        if (latestBucket != EMPTY && bucket <= latestBucket - bucketIds.length) {
+            return false;
+        }
+        latestBucket = Math.max(latestBucket, bucket);
+
+        int slot = slot(bucket);
+        if (bucketIds[slot] != bucket) {
+            bucketIds[slot] = bucket;
+            counts[slot] = 0;
+            senders[slot] = null;
+            topSenders[slot] = null;
+        }
+        counts[slot]++;
+        boolean grew = false;
+        if (senders[slot] == null) {
+            senders[slot] = new HyperLogLog(hllPrecision);
+            topSenders[slot] = new SpaceSaving(topCapacity);
+            grew = true;
+        }
+        int slots = topSenders[slot].slots();
+        senders[slot].add(senderId);
+        topSenders[slot].add(senderId, 1);
+        return grew || topSenders[slot].slots() != slots;
+    }
+
+    /**
+     * Примерный объем памяти окна в байтах: кольцо слотов плюс скетчи непустых корзин.
+     */
+    long footprint() {
+        long bytes = WINDOW_OVERHEAD + (long) SLOT_OVERHEAD * bucketIds.length;
+        for (int slot = 0; slot < bucketIds.length; slot++) {
+            if (senders[slot] != null) {
+                bytes += SKETCH_OVERHEAD + (1L << hllPrecision) + (long) TOP_SLOT_BYTES * topSenders[slot].slots();
+            }
+        }
+        return bytes;
+    }
+
+    Snapshot snapshot(long nowMillis, int bucketCount, int top) {
+        int size = Math.max(1, Math.min(bucketCount, bucketIds.length));
+        long last = Math.floorDiv(nowMillis, resolution.bucketMillis());
+
+        List<ActivityBucketDto> buckets = new ArrayList<>(size);
+        HyperLogLog allSenders = new HyperLogLog(hllPrecision);
+        List<SpaceSaving> sketches = new ArrayList<>();
+        long messages = 0;
+        for (long bucket = last - size + 1; bucket <= last; bucket++) {
+            int slot = slot(bucket);
+            Instant start = Instant.ofEpochMilli(bucket * resolution.bucketMillis());
+            if (bucketIds[slot] != bucket) {
+                buckets.add(new ActivityBucketDto(start, 0, 0));
+                continue;
+            }
+            buckets.add(new ActivityBucketDto(start, counts[slot], senders[slot].estimate()));
+            messages += counts[slot];
+            allSenders.merge(senders[slot]);
+            sketches.add(topSenders[slot]);
+        }
+
+        List<TopSenderDto> topList = SpaceSaving.merge(topCapacity, sketches).top(top).stream()
+            .map(entry -> new TopSenderDto(entry.key(), entry.count(), entry.error()))
+            .toList();
+        return new Snapshot(buckets, messages, allSenders.estimate(), topList);
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) bucketIds.length);
+    }
+
+    record Snapshot(List<ActivityBucketDto> buckets, long messages, long activeSenders, List<TopSenderDto> topSenders) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.alexander.smartchat.service.analytics;
+
+import com.alexander.smartchat.dto.ActivityResolution;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Активность одного чата (или всего сервиса) во всех разрешениях сразу.
+ */
+final class ChatActivity {
+
+    private final Map<ActivityResolution, ActivityWindow> windows = new EnumMap<>(ActivityResolution.class);
+
+    ChatActivity(int hllPrecision, int topCapacity) {
+        for (ActivityResolution resolution : ActivityResolution.values()) {
+            windows.put(resolution, new ActivityWindow(resolution, hllPrecision, topCapacity));
+        }
+    }
+
+    /**
+     * Возвращает true, если вес активности вырос и его нужно пересчитать в кеше.
+     */
+    synchronized boolean record(long epochMillis, UUID senderId) {
+        boolean grew = false;
+        for (ActivityWindow window : windows.values()) {
+            grew |= window.record(epochMillis, senderId);
+        }
+        return grew;
+    }
+
+    synchronized int weight() {
+        long bytes = 0;
+        for (ActivityWindow window : windows.values()) {
+            bytes += window.footprint();
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    synchronized ActivityWindow.Snapshot snapshot(ActivityResolution resolution, long nowMillis, int buckets, int top) {
+        return windows.get(resolution).snapshot(nowMillis, buckets, top);
+    }
+}
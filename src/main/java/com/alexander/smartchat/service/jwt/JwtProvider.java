@@ -3,6 +3,7 @@ package com.alexander.smartchat.service.jwt;
 import com.alexander.smartchat.entity.User;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -11,33 +12,44 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 
 @Slf4j
 @Component
 public class JwtProvider {
 
+    public static final String TOKEN_VERSION_CLAIM = "ver";
+
     @Value("${jwt.access-validity-minutes}")
     private long accessValidity;
     @Value("${jwt.refresh-validity-days}")
     private long refreshValidity;
-    private final Key accessKey;
-    private final Key refreshKey;
+    private final SecretKey accessKey;
+    private final SecretKey refreshKey;
+    private final JwtParser accessParser;
+    private final JwtParser refreshParser;
 
     public JwtProvider(@Value("${jwt.secret.access}") String aSecret,
                        @Value("${jwt.secret.refresh}") String rSecret) {
         this.accessKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(aSecret));
         this.refreshKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(rSecret));
+        this.accessParser = Jwts.parser().verifyWith(accessKey).build();
+        this.refreshParser = Jwts.parser().verifyWith(refreshKey).build();
     }
 
-    public String generateAccessToken(User user) {
+    public String generateAccessToken(User user, long tokenVersion) {
         Instant now = Instant.now();
         return Jwts.builder()
+            .setId(UUID.randomUUID().toString())
             .setSubject(user.getUsername())
             .claim("roles", user.getRole().name())
+            .claim(TOKEN_VERSION_CLAIM, tokenVersion)
             .setIssuedAt(Date.from(now))
             .setExpiration(Date.from(now.plus(accessValidity, ChronoUnit.MINUTES)))
             .signWith(accessKey)
@@ -47,6 +59,7 @@ public class JwtProvider {
     public String generateRefreshToken(User user) {
         Instant now = Instant.now();
         return Jwts.builder()
+            .setId(UUID.randomUUID().toString())
             .setSubject(user.getUsername())
             .setIssuedAt(Date.from(now))
             .setExpiration(Date.from(now.plus(refreshValidity, ChronoUnit.DAYS)))
@@ -54,37 +67,31 @@ public class JwtProvider {
             .compact();
     }
 
-    public boolean validateAccessToken(@NonNull String accessToken) {
-        return validateToken(accessToken, accessKey);
+    public Duration accessTokenLifetime() {
+        return Duration.ofMinutes(accessValidity);
     }
 
-    public boolean validateRefreshToken(@NonNull String refreshToken) {
-        return validateToken(refreshToken, refreshKey);
+    /**
+     * Проверяет подпись и срок действия access-токена и возвращает его claims; пусто, если токен недействителен.
+     */
+    public Optional<Claims> parseAccessToken(@NonNull String accessToken) {
+        return parse(accessToken, accessParser);
     }
 
-    public boolean validateToken(String token, Key key) {
-        try {
-            Jwts.parser().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException e) {
-            log.warn("JWT validation failed: {}", e.getMessage());
-            return false;
-        }
+    public Optional<Claims> parseRefreshToken(@NonNull String refreshToken) {
+        return parse(refreshToken, refreshParser);
     }
 
     public Claims getAccessClaims(@NonNull String token) {
-        return getClaims(token, accessKey);
+        return accessParser.parseSignedClaims(token).getPayload();
     }
 
-    public Claims getRefreshClaims(@NonNull String token) {
-        return getClaims(token, refreshKey);
-    }
-
-    private Claims getClaims(@NonNull String token, @NonNull Key secret) {
-        return Jwts.parser()
-            .setSigningKey(secret)
-            .build()
-            .parseClaimsJws(token)
-            .getBody();
+    private static Optional<Claims> parse(String token, JwtParser parser) {
+        try {
+            return Optional.of(parser.parseSignedClaims(token).getPayload());
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("JWT validation failed: {}", e.getMessage());
+            return Optional.empty();
+        }
     }
 }
@@ -0,0 +1,79 @@
+package com.alexander.smartchat.service.jwt;
+
+import com.alexander.smartchat.util.JwtParseUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Кеш уже проверенных access-токенов: ключ — SHA-256 токена, значение — его claims до момента истечения.
+ * Повторный запрос с тем же токеном обходится без проверки подписи и разбора JSON.
+ * Недействительные токены не кешируются; отозванный токен удаляется через {@link #invalidate(String)}.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final JwtProvider jwtProvider;
+    private final boolean enabled;
+    private final Cache<String, Claims> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public VerifiedTokenCache(JwtProvider jwtProvider,
+                              @Value("${jwt.verified-cache.enabled}") boolean enabled,
+                              @Value("${jwt.verified-cache.max-size}") long maxSize,
+                              MeterRegistry meterRegistry) {
+        this.jwtProvider = jwtProvider;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfter(Expiry.creating((String key, Claims claims) -> remainingLifetime(claims)))
+            .build();
+        this.hits = meterRegistry.counter("smartchat.jwt.verified.cache", "result", "hit");
+        this.misses = meterRegistry.counter("smartchat.jwt.verified.cache", "result", "miss");
+    }
+
+    public Optional<Claims> parseAccessToken(@NonNull String token) {
+        if (!enabled) {
+            return jwtProvider.parseAccessToken(token);
+        }
+        String key = hash(token);
+        Claims cached = cache.getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        Optional<Claims> claims = jwtProvider.parseAccessToken(token);
+        claims.filter(c -> c.getExpiration() != null).ifPresent(c -> cache.put(key, c));
+        return claims;
+    }
+
+    public void invalidate(@NonNull String token) {
+        cache.invalidate(hash(token));
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static Duration remainingLifetime(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return Duration.ofMillis(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+    }
+
+    private static String hash(String token) {
+        return Base64.getEncoder().encodeToString(JwtParseUtil.digest(token));
+    }
+}
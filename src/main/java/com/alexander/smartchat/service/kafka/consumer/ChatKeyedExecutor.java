@@ -0,0 +1,66 @@
+package com.alexander.smartchat.service.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Однопоточные "полосы" исполнения: все задачи одного чата попадают в одну полосу
+ * и выполняются строго в порядке отправки, разные чаты обрабатываются параллельно.
+ */
+@Slf4j
+@Component
+public class ChatKeyedExecutor implements DisposableBean {
+
+    private final ExecutorService[] lanes;
+
+    public ChatKeyedExecutor(@Value("${kafka.consumer.lanes}") int lanes,
+                             @Value("${kafka.consumer.virtual-threads}") boolean virtualThreads) {
+        int size = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ExecutorService[size];
+        for (int i = 0; i < size; i++) {
+            String name = "chat-lane-" + i;
+            ThreadFactory factory = virtualThreads
+                ? Thread.ofVirtual().name(name).factory()
+                : Thread.ofPlatform().name(name).factory();
+            this.lanes[i] = Executors.newSingleThreadExecutor(factory);
+        }
+        log.info("Запущено {} полос обработки сообщений (virtual threads: {})", size, virtualThreads);
+    }
+
+    public int size() {
+        return lanes.length;
+    }
+
+    public int laneOf(UUID chatId) {
+        return Math.floorMod(chatId.hashCode(), lanes.length);
+    }
+
+    public CompletableFuture<Void> submit(UUID chatId, Runnable task) {
+        return submitToLane(laneOf(chatId), task);
+    }
+
+    public CompletableFuture<Void> submitToLane(int lane, Runnable task) {
+        return CompletableFuture.runAsync(task, lanes[lane]);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                lane.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.alexander.smartchat.service.kafka.consumer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Приостанавливает слушателя, у которого в обработке слишком много сообщений, и возобновляет его,
+ * когда очередь спадает. Счетчик ведется отдельно по каждому слушателю: возобновить приостановленного
+ * слушателя может только завершение его собственной работы, поэтому чужая нагрузка не держит его на паузе.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Setter
+public class ConsumerBackpressure {
+
+    private final KafkaListenerEndpointRegistry registry;
+
+    @Value("${kafka.consumer.backpressure.high-watermark}")
+    private int highWatermark;
+
+    @Value("${kafka.consumer.backpressure.low-watermark}")
+    private int lowWatermark;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, AtomicInteger> inFlightByListener = new ConcurrentHashMap<>();
+    private final Set<String> pausedListeners = ConcurrentHashMap.newKeySet();
+
+    public void acquire(String listenerId, int count) {
+        inFlight.addAndGet(count);
+        int current = listenerInFlight(listenerId).addAndGet(count);
+        if (current >= highWatermark && pausedListeners.add(listenerId)) {
+            MessageListenerContainer container = registry.getListenerContainer(listenerId);
+            if (container != null) {
+                container.pause();
+            }
+            log.warn("Слушатель {} приостановлен: в обработке {} сообщений", listenerId, current);
+        }
+    }
+
+    public void release(String listenerId, int count) {
+        inFlight.addAndGet(-count);
+        int current = listenerInFlight(listenerId).addAndGet(-count);
+        if (current <= lowWatermark && pausedListeners.remove(listenerId)) {
+            MessageListenerContainer container = registry.getListenerContainer(listenerId);
+            if (container != null) {
+                container.resume();
+            }
+            log.info("Слушатель {} возобновлен: в обработке {} сообщений", listenerId, current);
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int inFlight(String listenerId) {
+        return listenerInFlight(listenerId).get();
+    }
+
+    public boolean awaitDrained(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private AtomicInteger listenerInFlight(String listenerId) {
+        return inFlightByListener.computeIfAbsent(listenerId, id -> new AtomicInteger());
+    }
+}
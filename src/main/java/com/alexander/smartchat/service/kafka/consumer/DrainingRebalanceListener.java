@@ -0,0 +1,41 @@
+package com.alexander.smartchat.service.kafka.consumer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DrainingRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final ConsumerBackpressure backpressure;
+    private final OffsetCommitTracker offsetCommitTracker;
+
+    @Value("${kafka.consumer.backpressure.drain-timeout}")
+    private Duration drainTimeout;
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        try {
+            if (!backpressure.awaitDrained(drainTimeout)) {
+                log.warn("Не дождались завершения {} сообщений перед ребалансировкой {}",
+                    backpressure.inFlight(), partitions);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        offsetCommitTracker.reset(partitions);
+    }
+}
@@ -0,0 +1,105 @@
+package com.alexander.smartchat.service.kafka.consumer;
+
+import com.alexander.smartchat.dto.MessageRequestDto;
+import com.alexander.smartchat.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Отправляет сообщения, которые не удалось сохранить, в retry-топик следующей попытки
+ * или, если ошибка неисправима либо попытки исчерпаны, в dead-letter топик.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Setter
+public class FailedMessageRouter {
+
+    public static final String ATTEMPT_HEADER = "x-retry-attempt";
+    public static final String RETRY_AT_HEADER = "x-retry-at";
+    public static final String EXCEPTION_HEADER = "x-exception";
+    public static final String EXCEPTION_MESSAGE_HEADER = "x-exception-message";
+
+    private final KafkaTemplate<String, MessageRequestDto> kafkaTemplate;
+    private final MessageRetryPolicy retryPolicy;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kafka.topic.dlt}")
+    private String deadLetterTopic;
+
+    public CompletableFuture<Void> route(List<MessageRequestDto> messages, int attempt, Throwable failure) {
+        Throwable cause = unwrap(failure);
+        boolean deadLetter = !isRetryable(cause) || retryPolicy.isExhausted(attempt);
+        String outcome = deadLetter ? "dead-letter" : "retry";
+        meterRegistry.counter("smartchat.messages.failed", "outcome", outcome, "reason", cause.getClass().getSimpleName())
+            .increment(messages.size());
+
+        if (deadLetter) {
+            log.error("{} сообщений отправлено в {} после {} попыток: {}", messages.size(), deadLetterTopic, attempt, cause.toString());
+        } else {
+            log.warn("{} сообщений отправлено на попытку {}: {}", messages.size(), attempt + 1, cause.toString());
+        }
+
+        return CompletableFuture.allOf(messages.stream()
+            .map(message -> deadLetter ? send(deadLetterTopic, message, attempt, cause, null)
+                : send(retryPolicy.retryTopic(attempt + 1), message, attempt + 1, cause,
+                Instant.now().plus(retryPolicy.delay(attempt + 1))))
+            .toArray(CompletableFuture[]::new));
+    }
+
+    public void skipUndecodable(int count) {
+        meterRegistry.counter("smartchat.messages.failed", "outcome", "skipped", "reason", "deserialization")
+            .increment(count);
+        log.error("Пропущено {} сообщений, которые не удалось десериализовать", count);
+    }
+
+    private CompletableFuture<?> send(String topic, MessageRequestDto message, int attempt, Throwable cause, Instant retryAt) {
+        ProducerRecord<String, MessageRequestDto> record =
+            new ProducerRecord<>(topic, message.chatId().toString(), message);
+        Headers headers = record.headers();
+        headers.add(ATTEMPT_HEADER, bytes(String.valueOf(attempt)));
+        headers.add(EXCEPTION_HEADER, bytes(cause.getClass().getName()));
+        headers.add(EXCEPTION_MESSAGE_HEADER, bytes(Objects.toString(cause.getMessage(), "")));
+        if (retryAt != null) {
+            headers.add(RETRY_AT_HEADER, bytes(String.valueOf(retryAt.toEpochMilli())));
+        }
+        return kafkaTemplate.send(record);
+    }
+
+    public static long longHeader(ConsumerRecord<?, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? 0 : Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    private static boolean isRetryable(Throwable cause) {
+        return !(cause instanceof ResourceNotFoundException || cause instanceof IllegalArgumentException);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
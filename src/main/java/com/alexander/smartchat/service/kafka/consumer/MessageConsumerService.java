@@ -1,61 +1,276 @@
 package com.alexander.smartchat.service.kafka.consumer;
 
 import com.alexander.smartchat.dto.MessageRequestDto;
-import com.alexander.smartchat.entity.Chat;
+import com.alexander.smartchat.dto.MessageResponseDto;
 import com.alexander.smartchat.entity.ChatMessage;
-import com.alexander.smartchat.entity.User;
+import com.alexander.smartchat.exception.ResourceNotFoundException;
+import com.alexander.smartchat.mapper.MessageMapper;
 import com.alexander.smartchat.repository.ChatRepository;
 import com.alexander.smartchat.repository.MessageRepository;
 import com.alexander.smartchat.repository.UserRepository;
+import com.alexander.smartchat.service.KnownEntityIds;
 import com.alexander.smartchat.service.redis.RedisCacheService;
+import com.alexander.smartchat.util.TimeOrderedUuid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.KafkaListenerConfigurer;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.config.MethodKafkaListenerEndpoint;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ReflectionUtils;
 
+import java.lang.reflect.Method;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class MessageConsumerService {
+public class MessageConsumerService implements KafkaListenerConfigurer {
 
     private final MessageRepository messageRepository;
     private final ChatRepository chatRepository;
     private final UserRepository userRepository;
     private final RedisCacheService redisCacheService;
-    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final ChatKeyedExecutor chatKeyedExecutor;
+    private final ConsumerBackpressure backpressure;
+    private final OffsetCommitTracker offsetCommitTracker;
+    private final ProcessedMessageIds processedMessageIds;
+    private final FailedMessageRouter failedMessageRouter;
+    private final KnownEntityIds knownEntityIds;
+    private final MessageRetryPolicy messageRetryPolicy;
+    private final MessageMapper messageMapper;
+    private static final String SINGLE_LISTENER_ID = "chat-messages-single";
+    private static final String BATCH_LISTENER_ID = "chat-messages-batch";
+    private static final String RETRY_GROUP_ID = "smartchat-retry-group";
 
-    private static final int RECENT_LIMIT = 100;
+    @KafkaListener(id = SINGLE_LISTENER_ID, topics = "${kafka.topic.name}", groupId = "smartchat-group",
+        autoStartup = "#{!${kafka.consumer.batch.enabled}}")
+    public void consumeMessage(ConsumerRecord<String, MessageRequestDto> record, Acknowledgment ack,
+                               Consumer<?, ?> consumer) {
+        List<ConsumerRecord<String, MessageRequestDto>> records = List.of(record);
+        if (offsetCommitTracker.rewindIfFailed(consumer, records)) {
+            return;
+        }
+        MessageRequestDto dto = record.value();
+        if (dto == null) {
+            failedMessageRouter.skipUndecodable(1);
+            offsetCommitTracker.acknowledgeInOrder(records, CompletableFuture.completedFuture(null), ack);
+            return;
+        }
+        backpressure.acquire(SINGLE_LISTENER_ID, 1);
+        CompletableFuture<Void> processing = chatKeyedExecutor.submit(dto.chatId(), () -> processMessage(dto))
+            .exceptionallyCompose(ex -> failedMessageRouter.route(List.of(dto), 0, ex));
+        offsetCommitTracker.acknowledgeInOrder(records, processing, ack)
+            .whenComplete((result, ex) -> backpressure.release(SINGLE_LISTENER_ID, 1));
+    }
+
+    @KafkaListener(id = BATCH_LISTENER_ID, topics = "${kafka.topic.name}", groupId = "smartchat-group",
+        containerFactory = "batchKafkaListenerContainerFactory", autoStartup = "${kafka.consumer.batch.enabled}")
+    public void consumeBatch(List<ConsumerRecord<String, MessageRequestDto>> records, Acknowledgment ack,
+                             Consumer<?, ?> consumer) {
+        if (offsetCommitTracker.rewindIfFailed(consumer, records)) {
+            return;
+        }
+        List<MessageRequestDto> messages = records.stream().map(ConsumerRecord::value).filter(Objects::nonNull).toList();
+        if (messages.size() < records.size()) {
+            failedMessageRouter.skipUndecodable(records.size() - messages.size());
+        }
+        backpressure.acquire(BATCH_LISTENER_ID, records.size());
+        CompletableFuture<Void> processing;
+        try {
+            processing = processBatch(messages);
+        } catch (RuntimeException e) {
+            processing = failedMessageRouter.route(messages, 0, e);
+        }
+        offsetCommitTracker.acknowledgeInOrder(records, processing, ack)
+            .whenComplete((result, ex) -> backpressure.release(BATCH_LISTENER_ID, records.size()));
+    }
+
+    /**
+     * Регистрирует отдельный контейнер на каждый retry-топик: nack с ожиданием приостанавливает
+     * весь потребитель, и в общем контейнере долгая задержка поздней попытки держала бы короткие.
+     * Идентификатор слушателя совпадает с именем топика.
+     */
+    @Override
+    public void configureKafkaListeners(KafkaListenerEndpointRegistrar registrar) {
+        DefaultMessageHandlerMethodFactory handlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        handlerMethodFactory.afterPropertiesSet();
+        Method method = ReflectionUtils.findMethod(MessageConsumerService.class, "consumeRetry",
+            ConsumerRecord.class, Acknowledgment.class, Consumer.class);
+
+        Properties properties = new Properties();
+        properties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        for (String topic : messageRetryPolicy.retryTopics()) {
+            MethodKafkaListenerEndpoint<String, MessageRequestDto> endpoint = new MethodKafkaListenerEndpoint<>();
+            endpoint.setId(topic);
+            endpoint.setGroupId(RETRY_GROUP_ID);
+            endpoint.setTopics(topic);
+            endpoint.setConsumerProperties(properties);
+            endpoint.setBean(this);
+            endpoint.setMethod(method);
+            endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+            registrar.registerEndpoint(endpoint);
+        }
+    }
 
-    @KafkaListener(topics = "${kafka.topic.name}", groupId = "smartchat-group")
-    public void consumeMessage(MessageRequestDto dto) {
-        executor.submit(() -> processMessage(dto));
+    public void consumeRetry(ConsumerRecord<String, MessageRequestDto> record, Acknowledgment ack,
+                             Consumer<?, ?> consumer) {
+        List<ConsumerRecord<String, MessageRequestDto>> records = List.of(record);
+        if (offsetCommitTracker.rewindIfFailed(consumer, records)) {
+            return;
+        }
+        long wait = FailedMessageRouter.longHeader(record, FailedMessageRouter.RETRY_AT_HEADER) - System.currentTimeMillis();
+        if (wait > 0) {
+            ack.nack(Duration.ofMillis(wait));
+            return;
+        }
+        MessageRequestDto dto = record.value();
+        if (dto == null) {
+            failedMessageRouter.skipUndecodable(1);
+            offsetCommitTracker.acknowledgeInOrder(records, CompletableFuture.completedFuture(null), ack);
+            return;
+        }
+        int attempt = (int) FailedMessageRouter.longHeader(record, FailedMessageRouter.ATTEMPT_HEADER);
+        log.info("Повторная попытка {} для сообщения {}", attempt, dto.id());
+        // у каждого retry-контейнера свой бюджет: его нагрузка не приостанавливает основной слушатель
+        String listenerId = record.topic();
+        backpressure.acquire(listenerId, 1);
+        CompletableFuture<Void> processing = chatKeyedExecutor.submit(dto.chatId(), () -> processMessage(dto))
+            .exceptionallyCompose(ex -> failedMessageRouter.route(List.of(dto), attempt, ex));
+        offsetCommitTracker.acknowledgeInOrder(records, processing, ack)
+            .whenComplete((result, ex) -> backpressure.release(listenerId, 1));
     }
 
     private void processMessage(MessageRequestDto dto) {
+        if (processedMessageIds.contains(dto.id())) {
+            log.info("Сообщение {} уже обработано, повторная доставка пропущена", dto.id());
+            return;
+        }
         log.info("Обработка сообщения для чата {} от пользователя {}", dto.chatId(), dto.senderId());
 
-        Chat chat = chatRepository.findById(dto.chatId())
-            .orElseThrow(() -> new ResourceNotFoundException("Чат не найден: " + dto.chatId()));
-        User sender = userRepository.findById(dto.senderId())
-            .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден: " + dto.senderId()));
+        if (!knownEntityIds.chatExists(dto.chatId()) || !knownEntityIds.userExists(dto.senderId())) {
+            throw new ResourceNotFoundException(
+                "Чат " + dto.chatId() + " или пользователь " + dto.senderId() + " не найден");
+        }
 
         ChatMessage message = ChatMessage.builder()
-            .chat(chat)
-            .sender(sender)
+            .id(messageId(dto))
+            .chat(chatRepository.getReferenceById(dto.chatId()))
+            .sender(userRepository.getReferenceById(dto.senderId()))
             .text(dto.text())
             .sentAt(Instant.now())
             .build();
 
-        ChatMessage saved = messageRepository.save(message);
+        List<ChatMessage> inserted = insert(List.of(message));
+        if (inserted.isEmpty()) {
+            processedMessageIds.markAll(List.of(message.getId()));
+            log.info("Сообщение {} уже сохранено, повторная доставка пропущена", message.getId());
+            return;
+        }
 
-        redisCacheService.cacheMessage(chat.getId(), saved, RECENT_LIMIT);
+        redisCacheService.cacheMessage(dto.chatId(), messageMapper.toDto(message));
+        // только после записи в кеш: иначе повторная доставка после сбоя Redis была бы пропущена
+        processedMessageIds.markAll(List.of(message.getId()));
 
-        log.info("Сообщение сохранено и добавлено в кеш чата {}", chat.getId());
+        log.info("Сообщение сохранено и добавлено в кеш чата {}", dto.chatId());
     }
-}
 
+    private CompletableFuture<Void> processBatch(List<MessageRequestDto> batch) {
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        log.info("Обработка пачки из {} сообщений", batch.size());
+
+        batch = batch.stream().filter(dto -> !processedMessageIds.contains(dto.id())).toList();
+        if (batch.isEmpty()) {
+            log.info("Все сообщения пачки уже обработаны");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Set<UUID> chatIds = batch.stream().map(MessageRequestDto::chatId).collect(Collectors.toSet());
+        Set<UUID> senderIds = batch.stream().map(MessageRequestDto::senderId).collect(Collectors.toSet());
+        Set<UUID> chats = knownEntityIds.existingChats(chatIds);
+        Set<UUID> senders = knownEntityIds.existingUsers(senderIds);
+
+        Map<Integer, List<ChatMessage>> byLane = new LinkedHashMap<>();
+        List<MessageRequestDto> unresolved = new ArrayList<>();
+        for (MessageRequestDto dto : batch) {
+            if (!chats.contains(dto.chatId()) || !senders.contains(dto.senderId())) {
+                unresolved.add(dto);
+                continue;
+            }
+            byLane.computeIfAbsent(chatKeyedExecutor.laneOf(dto.chatId()), lane -> new ArrayList<>())
+                .add(ChatMessage.builder()
+                    .id(messageId(dto))
+                    .chat(chatRepository.getReferenceById(dto.chatId()))
+                    .sender(userRepository.getReferenceById(dto.senderId()))
+                    .text(dto.text())
+                    .build());
+        }
+
+        List<CompletableFuture<Void>> stages = new ArrayList<>();
+        if (!unresolved.isEmpty()) {
+            stages.add(failedMessageRouter.route(unresolved, 0,
+                new ResourceNotFoundException("Чат или пользователь сообщения не найден")));
+        }
+        byLane.forEach((lane, messages) -> stages.add(
+            chatKeyedExecutor.submitToLane(lane, () -> persistAndCache(messages))
+                .exceptionallyCompose(ex -> failedMessageRouter.route(
+                    messages.stream().map(MessageConsumerService::toRequest).toList(), 0, ex))));
+        return CompletableFuture.allOf(stages.toArray(CompletableFuture[]::new));
+    }
+
+    private void persistAndCache(List<ChatMessage> messages) {
+        messages.forEach(message -> message.setSentAt(Instant.now()));
+        List<ChatMessage> saved = insert(messages);
+
+        Map<UUID, List<MessageResponseDto>> byChat = saved.stream()
+            .map(messageMapper::toDto)
+            .collect(Collectors.groupingBy(MessageResponseDto::chatId, LinkedHashMap::new, Collectors.toList()));
+        redisCacheService.cacheMessages(byChat);
+        processedMessageIds.markAll(messages.stream().map(ChatMessage::getId).toList());
+
+        log.info("Пачка из {} сообщений сохранена ({} дублей пропущено), обновлен кеш {} чатов",
+            saved.size(), messages.size() - saved.size(), byChat.size());
+    }
+
+    private List<ChatMessage> insert(List<ChatMessage> messages) {
+        try {
+            return messageRepository.insertIgnoringDuplicates(messages);
+        } catch (DataIntegrityViolationException e) {
+            // чат или пользователь удален после проверки: повторная попытка проверит их заново
+            messages.forEach(message -> {
+                knownEntityIds.evictChat(message.getChat().getId());
+                knownEntityIds.evictUser(message.getSender().getId());
+            });
+            throw e;
+        }
+    }
+
+    private static MessageRequestDto toRequest(ChatMessage message) {
+        return new MessageRequestDto(message.getId(), message.getChat().getId(), message.getSender().getId(),
+            message.getText());
+    }
+
+    private static UUID messageId(MessageRequestDto dto) {
+        return dto.id() != null ? dto.id() : TimeOrderedUuid.next();
+    }
+}
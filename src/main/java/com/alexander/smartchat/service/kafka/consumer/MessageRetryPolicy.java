@@ -0,0 +1,46 @@
+package com.alexander.smartchat.service.kafka.consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+/**
+ * Отдельный retry-топик на каждую попытку: внутри топика задержка одинакова,
+ * поэтому ожидание записи в начале раздела никогда не задерживает более ранние по сроку записи.
+ */
+@Component
+public class MessageRetryPolicy {
+
+    private final String topic;
+    private final int maxAttempts;
+    private final Duration initialDelay;
+    private final double multiplier;
+
+    public MessageRetryPolicy(@Value("${kafka.topic.name}") String topic,
+                              @Value("${kafka.consumer.retry.attempts}") int maxAttempts,
+                              @Value("${kafka.consumer.retry.initial-delay}") Duration initialDelay,
+                              @Value("${kafka.consumer.retry.multiplier}") double multiplier) {
+        this.topic = topic;
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.multiplier = multiplier;
+    }
+
+    public String[] retryTopics() {
+        return IntStream.rangeClosed(1, maxAttempts).mapToObj(this::retryTopic).toArray(String[]::new);
+    }
+
+    public String retryTopic(int attempt) {
+        return topic + "-retry-" + attempt;
+    }
+
+    public Duration delay(int attempt) {
+        return Duration.ofMillis((long) (initialDelay.toMillis() * Math.pow(multiplier, attempt - 1)));
+    }
+
+    public boolean isExhausted(int attempt) {
+        return attempt >= maxAttempts;
+    }
+}
@@ -0,0 +1,79 @@
+package com.alexander.smartchat.service.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Подтверждает смещения только после того, как сообщения сохранены, и строго в порядке получения:
+ * подтверждение пачки ждет подтверждения предыдущей пачки того же потребителя.
+ * После ошибки цепочка обрывается, а потребитель откатывается к первому необработанному смещению.
+ */
+@Slf4j
+@Component
+public class OffsetCommitTracker {
+
+    private final ThreadLocal<CompletableFuture<Void>> lastAcknowledgment =
+        ThreadLocal.withInitial(() -> CompletableFuture.completedFuture(null));
+
+    private final Map<TopicPartition, Long> rewindOffsets = new ConcurrentHashMap<>();
+
+    public CompletableFuture<Void> acknowledgeInOrder(List<? extends ConsumerRecord<?, ?>> records,
+                                                      CompletableFuture<Void> processing,
+                                                      Acknowledgment ack) {
+        CompletableFuture<Void> previous = lastAcknowledgment.get();
+        CompletableFuture<Void> acknowledged = processing
+            .whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("Ошибка обработки сообщений, смещения будут прочитаны повторно", ex);
+                    firstOffsets(records).forEach((partition, offset) -> rewindOffsets.merge(partition, offset, Math::min));
+                }
+            })
+            .thenCombine(previous, (result, ignored) -> result)
+            .thenRun(ack::acknowledge);
+        lastAcknowledgment.set(acknowledged);
+        return acknowledged;
+    }
+
+    public boolean rewindIfFailed(Consumer<?, ?> consumer, List<? extends ConsumerRecord<?, ?>> records) {
+        Map<TopicPartition, Long> seeks = new HashMap<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            Long offset = rewindOffsets.remove(partition);
+            if (offset != null) {
+                seeks.put(partition, offset);
+            }
+        }
+        if (seeks.isEmpty()) {
+            return false;
+        }
+
+        firstOffsets(records).forEach(seeks::putIfAbsent);
+        seeks.forEach(consumer::seek);
+        lastAcknowledgment.remove();
+        log.warn("Потребитель откатен к смещениям {} после ошибки обработки", seeks);
+        return true;
+    }
+
+    public void reset(Collection<TopicPartition> partitions) {
+        partitions.forEach(rewindOffsets::remove);
+        lastAcknowledgment.remove();
+    }
+
+    private static Map<TopicPartition, Long> firstOffsets(List<? extends ConsumerRecord<?, ?>> records) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (ConsumerRecord<?, ?> record : records) {
+            offsets.merge(new TopicPartition(record.topic(), record.partition()), record.offset(), Math::min);
+        }
+        return offsets;
+    }
+}
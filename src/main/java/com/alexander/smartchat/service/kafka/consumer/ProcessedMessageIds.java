@@ -0,0 +1,36 @@
+package com.alexander.smartchat.service.kafka.consumer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Недавно сохраненные идентификаторы сообщений. Повторные доставки после ребалансировки
+ * отбрасываются без обращения к базе; все, что вытеснено из кеша, отсекает ON CONFLICT при вставке.
+ */
+@Component
+public class ProcessedMessageIds {
+
+    private final Cache<UUID, Boolean> processed;
+
+    public ProcessedMessageIds(@Value("${kafka.consumer.dedup.ttl}") Duration ttl,
+                               @Value("${kafka.consumer.dedup.max-size}") long maxSize) {
+        this.processed = Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    public boolean contains(UUID messageId) {
+        return messageId != null && processed.getIfPresent(messageId) != null;
+    }
+
+    public void markAll(Collection<UUID> messageIds) {
+        messageIds.forEach(id -> processed.put(id, Boolean.TRUE));
+    }
+}
@@ -0,0 +1,85 @@
+package com.alexander.smartchat.service.kafka.producer;
+
+import com.alexander.smartchat.dto.MessageRequestDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Setter
+public class DeadLetterReplayService {
+
+    private static final String REPLAY_GROUP_ID = "smartchat-dlt-replay";
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<String, MessageRequestDto> consumerFactory;
+    private final KafkaTemplate<String, MessageRequestDto> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kafka.topic.name}")
+    private String topic;
+
+    @Value("${kafka.topic.dlt}")
+    private String deadLetterTopic;
+
+    public synchronized int replay(int limit) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(Math.min(limit, 500)));
+
+        int replayed = 0;
+        try (Consumer<String, MessageRequestDto> consumer =
+                 consumerFactory.createConsumer(REPLAY_GROUP_ID, null, null, overrides)) {
+            consumer.assign(consumer.partitionsFor(deadLetterTopic).stream()
+                .map(info -> new TopicPartition(info.topic(), info.partition()))
+                .toList());
+
+            while (replayed < limit) {
+                ConsumerRecords<String, MessageRequestDto> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                List<CompletableFuture<?>> sends = new ArrayList<>();
+                for (ConsumerRecord<String, MessageRequestDto> record : records) {
+                    if (replayed == limit) {
+                        break;
+                    }
+                    if (record.value() != null) {
+                        sends.add(kafkaTemplate.send(topic, record.value().chatId().toString(), record.value()));
+                        replayed++;
+                    }
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                        new OffsetAndMetadata(record.offset() + 1));
+                }
+                CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+                consumer.commitSync(offsets);
+            }
+        }
+
+        meterRegistry.counter("smartchat.messages.replayed").increment(replayed);
+        log.info("Из {} повторно отправлено {} сообщений", deadLetterTopic, replayed);
+        return replayed;
+    }
+}
@@ -0,0 +1,26 @@
+package com.alexander.smartchat.service.kafka.producer;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+@Getter
+@RequiredArgsConstructor
+public enum DeliveryMode {
+    FIRE_AND_FORGET("fire-and-forget", "0"),
+    LEADER_ACK("leader-ack", "1"),
+    ALL_ACK("all-ack", "all");
+
+    @JsonValue
+    private final String value;
+    private final String acks;
+
+    public static DeliveryMode fromValue(String value) {
+        return Arrays.stream(values())
+            .filter(mode -> mode.value.equalsIgnoreCase(value) || mode.name().equalsIgnoreCase(value))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Неизвестный режим подтверждения: " + value));
+    }
+}
@@ -0,0 +1,45 @@
+package com.alexander.smartchat.service.kafka.producer;
+
+import com.alexander.smartchat.dto.MessageRequestDto;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Отдельный продюсер на каждый режим подтверждения: acks задается на уровне продюсера,
+ * а не отдельной записи. Остальные настройки (linger, batch, сжатие) берутся из spring.kafka.producer.
+ */
+@Component
+public class DeliveryTemplates implements DisposableBean {
+
+    private final Map<DeliveryMode, ProducerFactory<String, MessageRequestDto>> factories = new EnumMap<>(DeliveryMode.class);
+    private final Map<DeliveryMode, KafkaTemplate<String, MessageRequestDto>> templates = new EnumMap<>(DeliveryMode.class);
+
+    public DeliveryTemplates(ProducerFactory<String, MessageRequestDto> producerFactory) {
+        for (DeliveryMode mode : DeliveryMode.values()) {
+            ProducerFactory<String, MessageRequestDto> factory = producerFactory.copyWithConfigurationOverride(Map.of(
+                ProducerConfig.ACKS_CONFIG, mode.getAcks(),
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, mode == DeliveryMode.ALL_ACK));
+            factories.put(mode, factory);
+            templates.put(mode, new KafkaTemplate<>(factory));
+        }
+    }
+
+    public KafkaTemplate<String, MessageRequestDto> forMode(DeliveryMode mode) {
+        return templates.get(mode);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (ProducerFactory<String, MessageRequestDto> factory : factories.values()) {
+            if (factory instanceof DisposableBean disposable) {
+                disposable.destroy();
+            }
+        }
+    }
+}
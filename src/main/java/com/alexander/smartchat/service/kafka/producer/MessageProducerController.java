@@ -1,15 +1,23 @@
 package com.alexander.smartchat.service.kafka.producer;
 
+import com.alexander.smartchat.dto.BulkMessageResultDto;
+import com.alexander.smartchat.dto.DeadLetterReplayDto;
+import com.alexander.smartchat.dto.MessageAcceptedDto;
 import com.alexander.smartchat.dto.MessageRequestDto;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "Producer сообщений", description = "Отправка новых сообщений в Kafka")
 @RestController
 @RequestMapping("/api/messages")
@@ -17,10 +25,28 @@ import org.springframework.web.bind.annotation.RestController;
 public class MessageProducerController {
 
     private final MessageProducerService messageProducerService;
+    private final DeadLetterReplayService deadLetterReplayService;
 
     @PostMapping
-    public ResponseEntity<Void> sendMessage(@Valid @RequestBody MessageRequestDto messageRequestDto) {
-        messageProducerService.sendMessage(messageRequestDto);
-        return ResponseEntity.accepted().build();
+    public CompletableFuture<ResponseEntity<MessageAcceptedDto>> sendMessage(
+        @Valid @RequestBody MessageRequestDto messageRequestDto,
+        @RequestParam(name = "ack", required = false) DeliveryMode deliveryMode
+    ) {
+        return messageProducerService.sendMessage(messageRequestDto, deliveryMode)
+            .thenApply(accepted -> ResponseEntity.accepted().body(accepted));
+    }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public CompletableFuture<ResponseEntity<List<BulkMessageResultDto>>> sendMessages(
+        @RequestBody List<MessageRequestDto> messages,
+        @RequestParam(name = "ack", required = false) DeliveryMode deliveryMode
+    ) {
+        return messageProducerService.sendMessages(messages, deliveryMode)
+            .thenApply(results -> ResponseEntity.accepted().body(results));
+    }
+
+    @PostMapping("/dlt/replay")
+    public ResponseEntity<DeadLetterReplayDto> replayDeadLetters(@RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(new DeadLetterReplayDto(deadLetterReplayService.replay(limit)));
     }
 }
@@ -1,26 +1,117 @@
 package com.alexander.smartchat.service.kafka.producer;
 
+import com.alexander.smartchat.dto.BulkMessageResultDto;
+import com.alexander.smartchat.dto.MessageAcceptedDto;
 import com.alexander.smartchat.dto.MessageRequestDto;
+import com.alexander.smartchat.exception.PayloadTooLargeException;
+import com.alexander.smartchat.util.TimeOrderedUuid;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @RequiredArgsConstructor
 @Service
 @Setter
 public class MessageProducerService {
 
-    private final KafkaTemplate<String, MessageRequestDto> kafkaTemplate;
+    private final DeliveryTemplates deliveryTemplates;
 
     @Value("${kafka.topic.name}")
     private String topic;
 
-    public void sendMessage(MessageRequestDto message) {
-        kafkaTemplate.send(topic, message.chatId().toString(), message);
-        log.info("Сообщение отправлено в Kafka: {}", message);
+    @Value("${kafka.producer.default-delivery-mode}")
+    private DeliveryMode defaultDeliveryMode;
+
+    @Value("${kafka.producer.bulk-max-size}")
+    private int bulkMaxSize;
+
+    public CompletableFuture<MessageAcceptedDto> sendMessage(MessageRequestDto request, DeliveryMode deliveryMode) {
+        MessageRequestDto message = withId(request);
+        DeliveryMode mode = deliveryMode != null ? deliveryMode : defaultDeliveryMode;
+
+        CompletableFuture<SendResult<String, MessageRequestDto>> sent = send(deliveryTemplates.forMode(mode), message, mode);
+
+        if (mode == DeliveryMode.FIRE_AND_FORGET) {
+            log.info("Сообщение {} передано продюсеру без ожидания подтверждения", message.id());
+            return CompletableFuture.completedFuture(new MessageAcceptedDto(message.id(), mode, null, null));
+        }
+
+        return sent.thenApply(result -> {
+            RecordMetadata metadata = result.getRecordMetadata();
+            log.info("Сообщение {} подтверждено Kafka ({}): раздел {}, смещение {}",
+                message.id(), mode.getValue(), metadata.partition(), metadata.offset());
+            return new MessageAcceptedDto(message.id(), mode, metadata.partition(), metadata.offset());
+        });
+    }
+
+    public CompletableFuture<List<BulkMessageResultDto>> sendMessages(List<MessageRequestDto> requests,
+                                                                     DeliveryMode deliveryMode) {
+        if (requests.size() > bulkMaxSize) {
+            throw new PayloadTooLargeException(
+                "В пачке " + requests.size() + " сообщений, допустимо не более " + bulkMaxSize);
+        }
+        DeliveryMode mode = deliveryMode != null ? deliveryMode : defaultDeliveryMode;
+        KafkaTemplate<String, MessageRequestDto> template = deliveryTemplates.forMode(mode);
+
+        List<CompletableFuture<BulkMessageResultDto>> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            MessageRequestDto request = requests.get(i);
+            if (request == null || request.chatId() == null || request.senderId() == null) {
+                results.add(CompletableFuture.completedFuture(new BulkMessageResultDto(
+                    index, null, BulkMessageResultDto.Status.REJECTED, null, null, "chatId и senderId обязательны")));
+                continue;
+            }
+            MessageRequestDto message = withId(request);
+            CompletableFuture<SendResult<String, MessageRequestDto>> sent;
+            try {
+                sent = send(template, message, mode);
+            } catch (RuntimeException e) {
+                log.error("Не удалось передать сообщение {} продюсеру", message.id(), e);
+                results.add(CompletableFuture.completedFuture(new BulkMessageResultDto(
+                    index, message.id(), BulkMessageResultDto.Status.FAILED, null, null, e.getMessage())));
+                continue;
+            }
+            results.add(mode == DeliveryMode.FIRE_AND_FORGET
+                ? CompletableFuture.completedFuture(new BulkMessageResultDto(
+                    index, message.id(), BulkMessageResultDto.Status.ACCEPTED, null, null, null))
+                : sent.handle((result, ex) -> ex == null
+                    ? new BulkMessageResultDto(index, message.id(), BulkMessageResultDto.Status.ACCEPTED,
+                    result.getRecordMetadata().partition(), result.getRecordMetadata().offset(), null)
+                    : new BulkMessageResultDto(index, message.id(), BulkMessageResultDto.Status.FAILED,
+                    null, null, ex.getMessage())));
+        }
+        log.info("Пачка из {} сообщений передана в Kafka ({})", requests.size(), mode.getValue());
+
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    private CompletableFuture<SendResult<String, MessageRequestDto>> send(KafkaTemplate<String, MessageRequestDto> template,
+                                                                          MessageRequestDto message, DeliveryMode mode) {
+        CompletableFuture<SendResult<String, MessageRequestDto>> sent =
+            template.send(topic, message.chatId().toString(), message);
+        if (mode == DeliveryMode.FIRE_AND_FORGET) {
+            sent.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("Не удалось отправить сообщение {} в Kafka", message.id(), ex);
+                }
+            });
+        }
+        return sent;
+    }
+
+    private static MessageRequestDto withId(MessageRequestDto request) {
+        return request.id() != null ? request : request.withId(TimeOrderedUuid.next());
     }
 }
@@ -0,0 +1,67 @@
+package com.alexander.smartchat.service.redis;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Идентификаторы чатов пользователя. Хранятся одной строкой, чтобы пустой список тоже кешировался,
+ * и сбрасываются после фиксации транзакции, изменившей состав участников.
+ */
+@Service
+@RequiredArgsConstructor
+@Setter
+public class ChatMembershipCache {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${chat.membership-cache-ttl}")
+    private Duration membershipCacheTtl;
+
+    private static String membershipKey(UUID userId) {
+        return "user:" + userId + ":chats";
+    }
+
+    public List<UUID> getChatIds(UUID userId, Supplier<List<UUID>> loader) {
+        String key = membershipKey(userId);
+        String cached = stringRedisTemplate.opsForValue().get(key);
+        if (cached != null) {
+            return cached.isEmpty()
+                ? List.of()
+                : Arrays.stream(cached.split(",")).map(UUID::fromString).toList();
+        }
+        List<UUID> chatIds = loader.get();
+        stringRedisTemplate.opsForValue().set(key,
+            chatIds.stream().map(UUID::toString).collect(Collectors.joining(",")), membershipCacheTtl);
+        return chatIds;
+    }
+
+    public void evictAfterCommit(Collection<UUID> userIds) {
+        List<String> keys = userIds.stream().map(ChatMembershipCache::membershipKey).toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stringRedisTemplate.delete(keys);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stringRedisTemplate.delete(keys);
+            }
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package com.alexander.smartchat.service.redis;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ход прогрева кеша последних сообщений. Незавершенный или неудачный прогрев не делает экземпляр
+ * нездоровым: чтение продолжает работать через базу.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecentCacheWarmUpHealthIndicator implements HealthIndicator {
+
+    private final RecentCacheWarmer warmer;
+
+    @Override
+    public Health health() {
+        WarmUpStatus status = warmer.status();
+        Health.Builder builder = status.state() == WarmUpStatus.State.FAILED ? Health.unknown() : Health.up();
+        builder.withDetail("state", status.state())
+            .withDetail("chats", status.chats())
+            .withDetail("processedChats", status.processedChats())
+            .withDetail("filledChats", status.filledChats())
+            .withDetail("failedBatches", status.failedBatches());
+        if (status.trigger() != null) {
+            builder.withDetail("trigger", status.trigger());
+        }
+        if (status.startedAt() != null) {
+            builder.withDetail("startedAt", status.startedAt());
+        }
+        if (status.finishedAt() != null) {
+            builder.withDetail("finishedAt", status.finishedAt());
+        }
+        return builder.build();
+    }
+}
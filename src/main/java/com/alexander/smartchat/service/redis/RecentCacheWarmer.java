@@ -0,0 +1,160 @@
+package com.alexander.smartchat.service.redis;
+
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.repository.MessageRepository;
+import io.lettuce.core.event.Event;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ReconnectAttemptEvent;
+import io.lettuce.core.resource.ClientResources;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Прогревает списки последних сообщений самых активных чатов после старта и после переподключения к Redis.
+ * Чаты читаются из базы пачками в несколько потоков, каждая пачка пишется в Redis одним конвейером,
+ * при этом заполняются только отсутствующие списки.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Setter
+public class RecentCacheWarmer implements DisposableBean {
+
+    private final MessageRepository messageRepository;
+    private final RedisCacheService redisCacheService;
+    private final RecentMessagesNearCache nearCache;
+    private final ClientResources redisClientResources;
+
+    @Value("${chat.warm-up.enabled}")
+    private boolean enabled;
+
+    @Value("${chat.warm-up.lookback}")
+    private Duration lookback;
+
+    @Value("${chat.warm-up.max-chats}")
+    private int maxChats;
+
+    @Value("${chat.warm-up.batch-size}")
+    private int batchSize;
+
+    @Value("${chat.warm-up.parallelism}")
+    private int parallelism;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private volatile WarmUpStatus status = WarmUpStatus.idle();
+    private volatile Disposable redisEvents;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        redisEvents = redisClientResources.eventBus().get().subscribe(this::onRedisEvent);
+        warmUpAsync("startup");
+    }
+
+    public void onRedisEvent(Event event) {
+        if (event instanceof ReconnectAttemptEvent) {
+            reconnecting.set(true);
+        } else if (event instanceof ConnectionActivatedEvent && reconnecting.compareAndSet(true, false)) {
+            log.info("Соединение с Redis восстановлено, локальный кеш сброшен");
+            nearCache.invalidateAll();
+            warmUpAsync("reconnect");
+        }
+    }
+
+    public boolean warmUpAsync(String trigger) {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofPlatform().daemon().name("recent-cache-warm-up").start(() -> {
+            try {
+                warmUp(trigger);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public WarmUpStatus warmUp(String trigger) {
+        Instant startedAt = Instant.now();
+        List<UUID> chatIds;
+        try {
+            chatIds = messageRepository.findMostActiveChatIds(startedAt.minus(lookback), maxChats);
+        } catch (RuntimeException e) {
+            log.error("Прогрев кеша ({}) не начат: не удалось получить активные чаты", trigger, e);
+            return status = new WarmUpStatus(WarmUpStatus.State.FAILED, trigger, 0, 0, 0, 1, startedAt, Instant.now());
+        }
+
+        int perChat = redisCacheService.recentCacheSize();
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger filled = new AtomicInteger();
+        AtomicInteger failedBatches = new AtomicInteger();
+        status = new WarmUpStatus(WarmUpStatus.State.RUNNING, trigger, chatIds.size(), 0, 0, 0, startedAt, null);
+        log.info("Прогрев кеша ({}): {} активных чатов", trigger, chatIds.size());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+            for (List<UUID> batch : partition(chatIds, batchSize)) {
+                executor.execute(() -> {
+                    try {
+                        Map<UUID, List<MessageResponseDto>> byChat = messageRepository.findRecentByChatIds(batch, perChat)
+                            .stream()
+                            .collect(Collectors.groupingBy(MessageResponseDto::chatId, LinkedHashMap::new, Collectors.toList()));
+                        filled.addAndGet(redisCacheService.fillRecentIfAbsent(byChat));
+                    } catch (RuntimeException e) {
+                        failedBatches.incrementAndGet();
+                        log.warn("Не удалось прогреть пачку из {} чатов", batch.size(), e);
+                    }
+                    status = new WarmUpStatus(WarmUpStatus.State.RUNNING, trigger, chatIds.size(),
+                        processed.addAndGet(batch.size()), filled.get(), failedBatches.get(), startedAt, null);
+                });
+            }
+        }
+
+        WarmUpStatus.State state = failedBatches.get() == 0 ? WarmUpStatus.State.COMPLETED : WarmUpStatus.State.FAILED;
+        status = new WarmUpStatus(state, trigger, chatIds.size(), processed.get(), filled.get(), failedBatches.get(),
+            startedAt, Instant.now());
+        log.info("Прогрев кеша ({}) завершен за {} мс: заполнено {} из {} чатов, ошибок {}", trigger,
+            Duration.between(startedAt, status.finishedAt()).toMillis(), filled.get(), chatIds.size(), failedBatches.get());
+        return status;
+    }
+
+    public WarmUpStatus status() {
+        return status;
+    }
+
+    @Override
+    public void destroy() {
+        Disposable subscription = redisEvents;
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private static List<List<UUID>> partition(List<UUID> ids, int size) {
+        List<List<UUID>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += size) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + size)));
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,12 @@
+package com.alexander.smartchat.service.redis;
+
+import com.alexander.smartchat.dto.MessageResponseDto;
+
+import java.util.List;
+
+/**
+ * Последние сообщения чата из кеша, от новых к старым. loaded означает, что список загружен из базы
+ * целиком и короткий список не является промахом.
+ */
+public record RecentMessages(List<MessageResponseDto> messages, boolean loaded) {
+}
@@ -0,0 +1,95 @@
+package com.alexander.smartchat.service.redis;
+
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Локальный кеш последних сообщений перед Redis. Запись ограничена суммарным весом (примерно в байтах)
+ * и временем жизни. Любое изменение списка в Redis публикуется в {@link #INVALIDATION_CHANNEL},
+ * и каждый экземпляр сбрасывает у себя этот чат; пропущенные уведомления ограничены временем жизни.
+ */
+@Slf4j
+@Component
+public class RecentMessagesNearCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "chat:recent:invalidate";
+
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int MESSAGE_OVERHEAD = 128;
+
+    private final boolean enabled;
+    private final Cache<UUID, RecentMessages> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public RecentMessagesNearCache(@Value("${chat.near-cache.enabled}") boolean enabled,
+                                   @Value("${chat.near-cache.ttl}") Duration ttl,
+                                   @Value("${chat.near-cache.max-weight}") long maxWeight,
+                                   MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .maximumWeight(maxWeight)
+            .weigher((UUID chatId, RecentMessages recent) -> weigh(recent))
+            .build();
+        this.hits = meterRegistry.counter("smartchat.recent.cache", "tier", "near", "result", "hit");
+        this.misses = meterRegistry.counter("smartchat.recent.cache", "tier", "near", "result", "miss");
+    }
+
+    public RecentMessages get(UUID chatId, Function<UUID, RecentMessages> loader) {
+        if (!enabled) {
+            return loader.apply(chatId);
+        }
+        RecentMessages cached = cache.getIfPresent(chatId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return cache.get(chatId, loader);
+    }
+
+    public void invalidate(UUID chatId) {
+        cache.invalidate(chatId);
+    }
+
+    public void invalidate(Collection<UUID> chatIds) {
+        cache.invalidateAll(chatIds);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            invalidate(UUID.fromString(body));
+        } catch (IllegalArgumentException e) {
+            log.warn("Некорректное уведомление об изменении кеша чата: {}", body);
+        }
+    }
+
+    private static int weigh(RecentMessages recent) {
+        long weight = ENTRY_OVERHEAD;
+        for (MessageResponseDto message : recent.messages()) {
+            weight += MESSAGE_OVERHEAD + 2L * message.text().length();
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+}
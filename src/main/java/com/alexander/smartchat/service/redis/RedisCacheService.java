@@ -1,49 +1,243 @@
 package com.alexander.smartchat.service.redis;
 
-import com.alexander.smartchat.entity.ChatMessage;
-import lombok.RequiredArgsConstructor;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 @Setter
 public class RedisCacheService {
 
-    private final RedisTemplate<String, ChatMessage> messageRedisTemplate;
+    private final RedisTemplate<String, MessageResponseDto> messageRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RecentMessagesNearCache nearCache;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    public RedisCacheService(RedisTemplate<String, MessageResponseDto> messageRedisTemplate,
+                             StringRedisTemplate stringRedisTemplate,
+                             RecentMessagesNearCache nearCache,
+                             MeterRegistry meterRegistry) {
+        this.messageRedisTemplate = messageRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.nearCache = nearCache;
+        this.redisHits = meterRegistry.counter("smartchat.recent.cache", "tier", "redis", "result", "hit");
+        this.redisMisses = meterRegistry.counter("smartchat.recent.cache", "tier", "redis", "result", "miss");
+    }
 
     @Value("${chat.message-cache-ttl}")
     private Duration messageCacheTtl;
 
+    @Value("${chat.recent-cache-size}")
+    private int recentCacheSize;
+
+    private static final byte[] INVALIDATION_CHANNEL =
+        RecentMessagesNearCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] PUSH_RECENT_SCRIPT = """
+        redis.call('LPUSH', KEYS[1], unpack(ARGV, 3))
+        redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[1]) - 1)
+        redis.call('PEXPIRE', KEYS[1], ARGV[2])
+        return redis.call('LLEN', KEYS[1])
+        """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] FILL_RECENT_SCRIPT = """
+        if redis.call('EXISTS', KEYS[1]) == 1 then
+            return 0
+        end
+        redis.call('RPUSH', KEYS[1], unpack(ARGV, 2))
+        redis.call('PEXPIRE', KEYS[1], ARGV[1])
+        redis.call('SET', KEYS[2], '1', 'PX', ARGV[1])
+        return 1
+        """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] REPLACE_RECENT_SCRIPT = """
+        local head = redis.call('LINDEX', KEYS[1], 0)
+        if (head or '') ~= ARGV[2] then
+            return 0
+        end
+        redis.call('DEL', KEYS[1])
+        if #ARGV > 2 then
+            redis.call('RPUSH', KEYS[1], unpack(ARGV, 3))
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+        end
+        redis.call('SET', KEYS[2], '1', 'PX', ARGV[1])
+        return 1
+        """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] EMPTY = new byte[0];
+
     private static String recentKey(UUID chatId) {
-        return "chat:" + chatId + ":recent";
+        return "chat:" + chatId + ":recent:v2";
+    }
+
+    private static String loadedKey(UUID chatId) {
+        return recentKey(chatId) + ":loaded";
+    }
+
+    public void cacheMessage(UUID chatId, MessageResponseDto message) {
+        cacheMessages(Map.of(chatId, List.of(message)));
+    }
+
+    /**
+     * Добавляет сообщения нескольких чатов за один проход до Redis: для каждого чата в конвейер
+     * отправляется скрипт, который атомарно делает LPUSH, LTRIM и PEXPIRE.
+     * Сообщения каждого чата передаются от старых к новым.
+     */
+    public void cacheMessages(Map<UUID, List<MessageResponseDto>> messagesByChat) {
+        Map<UUID, List<MessageResponseDto>> nonEmpty = new LinkedHashMap<>();
+        messagesByChat.forEach((chatId, messages) -> {
+            if (!messages.isEmpty()) {
+                nonEmpty.put(chatId, messages);
+            }
+        });
+        if (nonEmpty.isEmpty()) {
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        RedisSerializer<MessageResponseDto> serializer =
+            (RedisSerializer<MessageResponseDto>) messageRedisTemplate.getValueSerializer();
+        byte[] capacity = Integer.toString(recentCacheSize).getBytes(StandardCharsets.UTF_8);
+        byte[] ttlMillis = Long.toString(messageCacheTtl.toMillis()).getBytes(StandardCharsets.UTF_8);
+
+        messageRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            nonEmpty.forEach((chatId, messages) -> {
+                byte[][] keysAndArgs = new byte[messages.size() + 3][];
+                keysAndArgs[0] = recentKey(chatId).getBytes(StandardCharsets.UTF_8);
+                keysAndArgs[1] = capacity;
+                keysAndArgs[2] = ttlMillis;
+                for (int i = 0; i < messages.size(); i++) {
+                    keysAndArgs[i + 3] = serializer.serialize(messages.get(i));
+                }
+                connection.scriptingCommands().eval(PUSH_RECENT_SCRIPT, ReturnType.INTEGER, 1, keysAndArgs);
+                connection.publish(INVALIDATION_CHANNEL, chatId.toString().getBytes(StandardCharsets.UTF_8));
+            });
+            return null;
+        });
+        nearCache.invalidate(nonEmpty.keySet());
+    }
+
+    public RecentMessages getRecent(UUID chatId) {
+        return nearCache.get(chatId, this::readRecent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RecentMessages readRecent(UUID chatId) {
+        List<Object> results = messageRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.listCommands().lRange(recentKey(chatId).getBytes(StandardCharsets.UTF_8), 0, recentCacheSize - 1);
+            connection.keyCommands().exists(loadedKey(chatId).getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        List<MessageResponseDto> messages = results.get(0) != null ? (List<MessageResponseDto>) results.get(0) : List.of();
+        boolean loaded = Boolean.TRUE.equals(results.get(1));
+
+        (messages.isEmpty() && !loaded ? redisMisses : redisHits).increment();
+        return new RecentMessages(messages, loaded);
+    }
+
+    /**
+     * Заменяет список чата загруженным из базы и помечает его полным одним скриптом. Замена выполняется,
+     * только если голова списка не изменилась с момента чтения observed: иначе потребитель уже добавил
+     * сообщение, которого может не быть в загруженном списке, и список остается как есть.
+     * Возвращает true, если список заменен.
+     */
+    public boolean replaceRecentMessages(UUID chatId, RecentMessages observed, List<MessageResponseDto> newestFirst) {
+        @SuppressWarnings("unchecked")
+        RedisSerializer<MessageResponseDto> serializer =
+            (RedisSerializer<MessageResponseDto>) messageRedisTemplate.getValueSerializer();
+        byte[][] keysAndArgs = new byte[newestFirst.size() + 4][];
+        keysAndArgs[0] = recentKey(chatId).getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[1] = loadedKey(chatId).getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[2] = Long.toString(messageCacheTtl.toMillis()).getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[3] = observed.messages().isEmpty() ? EMPTY : serializer.serialize(observed.messages().get(0));
+        for (int i = 0; i < newestFirst.size(); i++) {
+            keysAndArgs[i + 4] = serializer.serialize(newestFirst.get(i));
+        }
+
+        Long replaced = messageRedisTemplate.execute((RedisCallback<Long>) connection ->
+            connection.scriptingCommands().eval(REPLACE_RECENT_SCRIPT, ReturnType.INTEGER, 2, keysAndArgs));
+        if (Long.valueOf(1).equals(replaced)) {
+            publishInvalidation(chatId);
+            return true;
+        }
+        nearCache.invalidate(chatId);
+        return false;
     }
 
-    public void cacheMessage(UUID chatId, ChatMessage message, int limit) {
-        String key = recentKey(chatId);
+    /**
+     * Заполняет списки чатов, которых еще нет в Redis, одним конвейером. Существующий список не трогается:
+     * в него уже пишет потребитель, и замена могла бы потерять сообщение, сохраненное после чтения из базы.
+     * Сообщения каждого чата передаются от новых к старым. Возвращает число заполненных списков.
+     */
+    public int fillRecentIfAbsent(Map<UUID, List<MessageResponseDto>> newestFirstByChat) {
+        Map<UUID, List<MessageResponseDto>> nonEmpty = new LinkedHashMap<>();
+        newestFirstByChat.forEach((chatId, messages) -> {
+            if (!messages.isEmpty()) {
+                nonEmpty.put(chatId, messages);
+            }
+        });
+        if (nonEmpty.isEmpty()) {
+            return 0;
+        }
 
-        messageRedisTemplate.opsForList().leftPush(key, message);
-        messageRedisTemplate.opsForList().trim(key, 0, limit - 1);
+        @SuppressWarnings("unchecked")
+        RedisSerializer<MessageResponseDto> serializer =
+            (RedisSerializer<MessageResponseDto>) messageRedisTemplate.getValueSerializer();
+        byte[] ttlMillis = Long.toString(messageCacheTtl.toMillis()).getBytes(StandardCharsets.UTF_8);
 
-        if (!messageRedisTemplate.hasKey(key)) {
-            messageRedisTemplate.expire(key, messageCacheTtl);
+        List<Object> results = messageRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            nonEmpty.forEach((chatId, messages) -> {
+                byte[][] keysAndArgs = new byte[messages.size() + 3][];
+                keysAndArgs[0] = recentKey(chatId).getBytes(StandardCharsets.UTF_8);
+                keysAndArgs[1] = loadedKey(chatId).getBytes(StandardCharsets.UTF_8);
+                keysAndArgs[2] = ttlMillis;
+                for (int i = 0; i < messages.size(); i++) {
+                    keysAndArgs[i + 3] = serializer.serialize(messages.get(i));
+                }
+                connection.scriptingCommands().eval(FILL_RECENT_SCRIPT, ReturnType.INTEGER, 2, keysAndArgs);
+                connection.publish(INVALIDATION_CHANNEL, chatId.toString().getBytes(StandardCharsets.UTF_8));
+            });
+            return null;
+        });
+        nearCache.invalidate(nonEmpty.keySet());
+        int filled = 0;
+        // на каждый чат в конвейере два ответа: скрипт и PUBLISH
+        for (int i = 0; i < results.size(); i += 2) {
+            if (Long.valueOf(1).equals(results.get(i))) {
+                filled++;
+            }
         }
+        return filled;
     }
 
-    public List<ChatMessage> getRecentMessages(UUID chatId, int limit) {
-        String key = recentKey(chatId);
-        return messageRedisTemplate.opsForList().range(key, 0, limit - 1);
+    public int recentCacheSize() {
+        return recentCacheSize;
     }
 
     public void clearChatCache(UUID chatId) {
         messageRedisTemplate.delete(recentKey(chatId));
+        stringRedisTemplate.delete(loadedKey(chatId));
+        publishInvalidation(chatId);
     }
-}
-
 
+    private void publishInvalidation(UUID chatId) {
+        nearCache.invalidate(chatId);
+        stringRedisTemplate.convertAndSend(RecentMessagesNearCache.INVALIDATION_CHANNEL, chatId.toString());
+    }
+}
@@ -0,0 +1,128 @@
+package com.alexander.smartchat.service.redis;
+
+import com.alexander.smartchat.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Локальный фильтр Блума отозванных токенов перед черным списком в Redis: если фильтр отвечает «нет»,
+ * токен точно не отзывался и в Redis можно не ходить. Отзывы хранятся в отсортированном множестве
+ * {@link #REVOKED_KEY} (SHA-256 токена, оценка — время истечения) и рассылаются через {@link #REVOKED_CHANNEL}.
+ * Фильтр пересобирается из множества при старте и периодически, чтобы забыть истекшие токены
+ * и подобрать пропущенные уведомления. Пока фильтр не собран, каждая проверка идет в Redis.
+ */
+@Slf4j
+@Component
+public class RevokedTokenFilter implements MessageListener {
+
+    public static final String REVOKED_KEY = "token:revoked";
+    public static final String REVOKED_CHANNEL = "token:revoked:notify";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final Counter negatives;
+    private final Counter positives;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter rebuilding;
+
+    public RevokedTokenFilter(StringRedisTemplate stringRedisTemplate,
+                              @Value("${jwt.revoked-filter.enabled}") boolean enabled,
+                              @Value("${jwt.revoked-filter.expected-insertions}") long expectedInsertions,
+                              @Value("${jwt.revoked-filter.false-positive-rate}") double falsePositiveRate,
+                              MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.negatives = meterRegistry.counter("smartchat.jwt.revoked.filter", "result", "negative");
+        this.positives = meterRegistry.counter("smartchat.jwt.revoked.filter", "result", "positive");
+    }
+
+    public boolean mightBeRevoked(byte[] digest) {
+        BloomFilter current = filter;
+        if (!enabled || current == null) {
+            return true;
+        }
+        if (current.mightContain(digest)) {
+            positives.increment();
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    public void revoke(byte[] digest, Instant expiresAt) {
+        String member = Base64.getEncoder().encodeToString(digest);
+        stringRedisTemplate.opsForZSet().add(REVOKED_KEY, member, expiresAt.toEpochMilli());
+        put(digest);
+        stringRedisTemplate.convertAndSend(REVOKED_CHANNEL, member);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${jwt.revoked-filter.rebuild-interval}",
+        fixedDelayString = "${jwt.revoked-filter.rebuild-interval}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        BloomFilter next = new BloomFilter(expectedInsertions, falsePositiveRate);
+        rebuilding = next;
+        try {
+            stringRedisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, 0, System.currentTimeMillis());
+            Set<String> members = stringRedisTemplate.opsForZSet().range(REVOKED_KEY, 0, -1);
+            if (members != null) {
+                members.forEach(member -> next.put(Base64.getDecoder().decode(member)));
+            }
+            filter = next;
+            log.debug("Фильтр отозванных токенов пересобран: {} записей", members == null ? 0 : members.size());
+        } catch (DataAccessException e) {
+            log.warn("Не удалось пересобрать фильтр отозванных токенов, проверки идут в Redis", e);
+            filter = null;
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            put(Base64.getDecoder().decode(body));
+        } catch (IllegalArgumentException e) {
+            log.warn("Некорректное уведомление об отзыве токена: {}", body);
+        }
+    }
+
+    private void put(byte[] digest) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(digest);
+        }
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(digest);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.alexander.smartchat.service.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Локальный кеш данных пользователя для аутентификации запросов, чтобы фильтр не ходил в базу
+ * на каждый вызов API. Удаление или изменение пользователя сбрасывает запись на всех экземплярах
+ * через {@link #INVALIDATION_CHANNEL} после фиксации транзакции; пропущенные уведомления ограничены временем жизни.
+ */
+@Component
+public class UserDetailsCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "user:details:invalidate";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final boolean enabled;
+    private final Cache<String, UserDetails> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserDetailsCache(StringRedisTemplate stringRedisTemplate,
+                            @Value("${chat.user-details-cache.enabled}") boolean enabled,
+                            @Value("${chat.user-details-cache.ttl}") Duration ttl,
+                            @Value("${chat.user-details-cache.max-size}") long maxSize,
+                            MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .maximumSize(maxSize)
+            .build();
+        this.hits = meterRegistry.counter("smartchat.user.details.cache", "result", "hit");
+        this.misses = meterRegistry.counter("smartchat.user.details.cache", "result", "miss");
+    }
+
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        if (!enabled) {
+            return loader.apply(username);
+        }
+        UserDetails cached = cache.getIfPresent(username);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return cache.get(username, loader);
+    }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    public void evictAfterCommit(String username) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictEverywhere(username);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictEverywhere(username);
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void evictEverywhere(String username) {
+        invalidate(username);
+        stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, username);
+    }
+}
@@ -0,0 +1,21 @@
+package com.alexander.smartchat.service.redis;
+
+import java.time.Instant;
+
+public record WarmUpStatus(State state,
+                           String trigger,
+                           int chats,
+                           int processedChats,
+                           int filledChats,
+                           int failedBatches,
+                           Instant startedAt,
+                           Instant finishedAt) {
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    public static WarmUpStatus idle() {
+        return new WarmUpStatus(State.IDLE, null, 0, 0, 0, 0, null, null);
+    }
+}
@@ -0,0 +1,206 @@
+package com.alexander.smartchat.service.redis.serializer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Компактный бинарный формат значений в Redis: байт версии, UUID по 16 байт, время в микросекундах
+ * от эпохи и тексты в UTF-8 с префиксом длины. Длинные тексты сжимаются LZ4, если это уменьшает размер.
+ * Значения без байта версии (JSON, записанный до перехода) читаются прежним сериализатором.
+ */
+public abstract class CompactRedisSerializer<T> implements RedisSerializer<T> {
+
+    static final byte FORMAT_VERSION = 1;
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private final Class<T> type;
+    private final RedisSerializer<?> legacySerializer;
+    private final int compressionThreshold;
+
+    protected CompactRedisSerializer(Class<T> type, RedisSerializer<?> legacySerializer, int compressionThreshold) {
+        this.type = type;
+        this.legacySerializer = legacySerializer;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    protected abstract void write(T value, Output out);
+
+    protected abstract T read(Input in);
+
+    @Override
+    public byte[] serialize(T value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        Output out = new Output(compressionThreshold);
+        out.write(FORMAT_VERSION);
+        write(value, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != FORMAT_VERSION) {
+            return type.cast(legacySerializer.deserialize(bytes));
+        }
+        try {
+            return read(new Input(ByteBuffer.wrap(bytes, 1, bytes.length - 1)));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | LZ4Exception e) {
+            throw new SerializationException("Поврежденное значение " + type.getSimpleName() + " в Redis", e);
+        }
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return type;
+    }
+
+    protected static final class Output {
+
+        private final int compressionThreshold;
+        private byte[] buf = new byte[64];
+        private int count;
+
+        private Output(int compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+        }
+
+        public void write(int b) {
+            ensureCapacity(1);
+            buf[count++] = (byte) b;
+        }
+
+        public void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buf, count, length);
+            count += length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        public void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        public void writeUuid(UUID value) {
+            writeLong(value.getMostSignificantBits());
+            writeLong(value.getLeastSignificantBits());
+        }
+
+        public void writeInstant(Instant value) {
+            writeLong(Math.addExact(Math.multiplyExact(value.getEpochSecond(), 1_000_000L), value.getNano() / 1_000));
+        }
+
+        /**
+         * Заголовок текста: 0 для null, иначе (длина << 1 | признак сжатия) + 1.
+         */
+        public void writeText(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+            if (compressionThreshold > 0 && raw.length >= compressionThreshold) {
+                byte[] compressed = COMPRESSOR.compress(raw);
+                if (compressed.length < raw.length) {
+                    writeVarInt(((long) raw.length << 1 | 1) + 1);
+                    writeVarInt(compressed.length);
+                    write(compressed, 0, compressed.length);
+                    return;
+                }
+            }
+            writeVarInt(((long) raw.length << 1) + 1);
+            write(raw, 0, raw.length);
+        }
+
+        private void writeVarInt(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+
+    protected static final class Input {
+
+        private final ByteBuffer buffer;
+
+        private Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public long readLong() {
+            return buffer.getLong();
+        }
+
+        public UUID readUuid() {
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+
+        public Instant readInstant() {
+            long micros = buffer.getLong();
+            return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000);
+        }
+
+        public String readText() {
+            long header = readVarInt();
+            if (header == 0) {
+                return null;
+            }
+            int length = Math.toIntExact((header - 1) >>> 1);
+            boolean compressed = ((header - 1) & 1) == 1;
+            byte[] raw = new byte[length];
+            if (compressed) {
+                int compressedLength = Math.toIntExact(readVarInt());
+                byte[] source = new byte[compressedLength];
+                buffer.get(source);
+                int restored = DECOMPRESSOR.decompress(source, 0, compressedLength, raw, 0, length);
+                if (restored != length) {
+                    throw new IndexOutOfBoundsException("Ожидалось " + length + " байт текста, получено " + restored);
+                }
+            } else {
+                buffer.get(raw);
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        }
+
+        private long readVarInt() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IndexOutOfBoundsException("Слишком длинное число переменной длины");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.alexander.smartchat.service.redis.serializer;
+
+import com.alexander.smartchat.dto.JwtResponse;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+public class JwtResponseCompactSerializer extends CompactRedisSerializer<JwtResponse> {
+
+    public JwtResponseCompactSerializer(RedisSerializer<?> legacySerializer, int compressionThreshold) {
+        super(JwtResponse.class, legacySerializer, compressionThreshold);
+    }
+
+    @Override
+    protected void write(JwtResponse response, Output out) {
+        out.writeText(response.accessToken());
+        out.writeText(response.refreshToken());
+    }
+
+    @Override
+    protected JwtResponse read(Input in) {
+        return new JwtResponse(in.readText(), in.readText());
+    }
+}
@@ -0,0 +1,29 @@
+package com.alexander.smartchat.service.redis.serializer;
+
+import com.alexander.smartchat.dto.MessageResponseDto;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+public class MessageCompactSerializer extends CompactRedisSerializer<MessageResponseDto> {
+
+    public MessageCompactSerializer(RedisSerializer<?> legacySerializer, int compressionThreshold) {
+        super(MessageResponseDto.class, legacySerializer, compressionThreshold);
+    }
+
+    @Override
+    protected void write(MessageResponseDto message, Output out) {
+        out.writeUuid(message.id());
+        out.writeUuid(message.chatId());
+        out.writeUuid(message.senderId());
+        out.writeInstant(message.sentAt());
+        out.writeText(message.text());
+    }
+
+    @Override
+    protected MessageResponseDto read(Input in) {
+        var id = in.readUuid();
+        var chatId = in.readUuid();
+        var senderId = in.readUuid();
+        var sentAt = in.readInstant();
+        return new MessageResponseDto(id, chatId, senderId, in.readText(), sentAt);
+    }
+}
@@ -0,0 +1,78 @@
+package com.alexander.smartchat.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для уже хешированных ключей (например, SHA-256): ложных отрицательных ответов не бывает,
+ * доля ложных положительных задается при создании. Добавление и проверка безопасны из нескольких потоков.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Ожидаемое число элементов должно быть положительным: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Доля ложных срабатываний должна быть в (0, 1): " + falsePositiveRate);
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(byte[] digest) {
+        long h1 = h1(digest);
+        long h2 = h2(digest);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(byte[] digest) {
+        long h1 = h1(digest);
+        long h2 = h2(digest);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private static long h1(byte[] digest) {
+        requireDigest(digest);
+        return ByteBuffer.wrap(digest, 0, 8).getLong();
+    }
+
+    private static long h2(byte[] digest) {
+        return ByteBuffer.wrap(digest, 8, 8).getLong() | 1;
+    }
+
+    private static void requireDigest(byte[] digest) {
+        if (digest.length < 16) {
+            throw new IllegalArgumentException("Ключ фильтра Блума должен быть хешем длиной не менее 16 байт");
+        }
+    }
+}
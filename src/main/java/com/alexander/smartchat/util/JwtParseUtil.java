@@ -5,9 +5,21 @@ import lombok.experimental.UtilityClass;
 import org.springframework.http.HttpHeaders;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 @UtilityClass
 public class JwtParseUtil {
 
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    });
+
     public String getTokenFromRequest(HttpServletRequest request) {
         final String bearer = request.getHeader(HttpHeaders.AUTHORIZATION);
         if (StringUtils.hasText(bearer) && bearer.startsWith("Bearer ")) {
@@ -15,4 +27,8 @@ public class JwtParseUtil {
         }
         return null;
     }
+
+    public byte[] digest(String token) {
+        return SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+    }
 }
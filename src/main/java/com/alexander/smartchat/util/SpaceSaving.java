@@ -0,0 +1,128 @@
+package com.alexander.smartchat.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Поиск самых частых отправителей потока (алгоритм Space-Saving) на фиксированном числе счетчиков.
+ * Для каждого элемента хранится счетчик и его максимальная переоценка: реальное число вхождений
+ * лежит в диапазоне [count - error, count]. Ключи и счетчики лежат в примитивных массивах,
+ * которые растут по мере появления новых отправителей до заданной емкости.
+ */
+public final class SpaceSaving {
+
+    private static final int INITIAL_SLOTS = 4;
+
+    private final int capacity;
+    private long[] mostBits;
+    private long[] leastBits;
+    private long[] counts;
+    private long[] errors;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Число счетчиков должно быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+        int slots = Math.min(capacity, INITIAL_SLOTS);
+        this.mostBits = new long[slots];
+        this.leastBits = new long[slots];
+        this.counts = new long[slots];
+        this.errors = new long[slots];
+    }
+
+    public void add(UUID key, long increment) {
+        long most = key.getMostSignificantBits();
+        long least = key.getLeastSignificantBits();
+        int index = indexOf(most, least);
+        if (index >= 0) {
+            counts[index] += increment;
+            return;
+        }
+        if (size < capacity) {
+            append(most, least, increment, 0);
+            return;
+        }
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        mostBits[min] = most;
+        leastBits[min] = least;
+        errors[min] = counts[min];
+        counts[min] += increment;
+    }
+
+    public List<Entry> top(int limit) {
+        return IntStream.range(0, size)
+            .mapToObj(this::entry)
+            .sorted(Comparator.comparingLong(Entry::count).reversed())
+            .limit(limit)
+            .toList();
+    }
+
+    /**
+     * Число выделенных счетчиков; растет вместе с числом отправителей, но не больше емкости.
+     */
+    public int slots() {
+        return counts.length;
+    }
+
+    public static SpaceSaving merge(int capacity, Collection<SpaceSaving> sketches) {
+        Map<UUID, long[]> sums = new HashMap<>();
+        for (SpaceSaving sketch : sketches) {
+            for (int i = 0; i < sketch.size; i++) {
+                long[] sum = sums.computeIfAbsent(new UUID(sketch.mostBits[i], sketch.leastBits[i]), k -> new long[2]);
+                sum[0] += sketch.counts[i];
+                sum[1] += sketch.errors[i];
+            }
+        }
+        SpaceSaving merged = new SpaceSaving(capacity);
+        sums.entrySet().stream()
+            .sorted(Comparator.comparingLong((Map.Entry<UUID, long[]> entry) -> entry.getValue()[0]).reversed())
+            .limit(capacity)
+            .forEach(entry -> merged.append(entry.getKey().getMostSignificantBits(),
+                entry.getKey().getLeastSignificantBits(), entry.getValue()[0], entry.getValue()[1]));
+        return merged;
+    }
+
+    private int indexOf(long most, long least) {
+        for (int i = 0; i < size; i++) {
+            if (mostBits[i] == most && leastBits[i] == least) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void append(long most, long least, long count, long error) {
+        if (size == counts.length) {
+            int slots = Math.min(capacity, size * 2);
+            mostBits = Arrays.copyOf(mostBits, slots);
+            leastBits = Arrays.copyOf(leastBits, slots);
+            counts = Arrays.copyOf(counts, slots);
+            errors = Arrays.copyOf(errors, slots);
+        }
+        mostBits[size] = most;
+        leastBits[size] = least;
+        counts[size] = count;
+        errors[size] = error;
+        size++;
+    }
+
+    private Entry entry(int index) {
+        return new Entry(new UUID(mostBits[index], leastBits[index]), counts[index], errors[index]);
+    }
+
+    public record Entry(UUID key, long count, long error) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.alexander.smartchat.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@UtilityClass
+public class TimeOrderedUuid {
+
+    public UUID next() {
+        return fromMillis(System.currentTimeMillis());
+    }
+
+    UUID fromMillis(long epochMillis) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = (epochMillis << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
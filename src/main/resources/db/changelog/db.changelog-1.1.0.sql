@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS idx_chat_messages_chat_sent_at_id
+    ON chat_messages (chat_id, sent_at DESC, id DESC);
@@ -0,0 +1,5 @@
+CREATE INDEX IF NOT EXISTS idx_chat_messages_chat_sender
+    ON chat_messages (chat_id, sender_id);
+
+CREATE INDEX IF NOT EXISTS idx_chat_users_user
+    ON chat_users (user_id);
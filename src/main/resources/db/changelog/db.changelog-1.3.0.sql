@@ -0,0 +1,12 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+ALTER TABLE chat_messages
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+        GENERATED ALWAYS AS (to_tsvector('simple', text)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_search
+    ON chat_messages USING gin (chat_id, search_vector);
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_text_trgm
+    ON chat_messages USING gin (chat_id, text gin_trgm_ops);
@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS chat_sender_stats
+(
+    chat_id       uuid   NOT NULL,
+    sender_id     uuid   NOT NULL,
+    message_count bigint NOT NULL,
+    PRIMARY KEY (chat_id, sender_id),
+    CONSTRAINT fk_sender_stats_chat FOREIGN KEY (chat_id) REFERENCES chats (id) ON DELETE CASCADE
+);
+
+INSERT INTO chat_sender_stats (chat_id, sender_id, message_count)
+SELECT chat_id, sender_id, count(*)
+FROM chat_messages
+WHERE sender_id IS NOT NULL
+GROUP BY chat_id, sender_id
+ON CONFLICT (chat_id, sender_id) DO UPDATE SET message_count = EXCLUDED.message_count;
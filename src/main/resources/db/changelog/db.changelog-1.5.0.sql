@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS idx_chat_messages_sent_at_brin
+    ON chat_messages USING brin (sent_at);
@@ -105,4 +105,15 @@ class AuthControllerTest {
 
         verify(blacklistTokenService).saveTokenBlackList(eq(tokenHeader));
     }
+
+    @Test
+    void logoutAll_ValidToken_ReturnsOk() throws Exception {
+        String tokenHeader = "Bearer some.jwt.token";
+
+        mockMvc.perform(post("/auth/logout/all")
+                .header(HttpHeaders.AUTHORIZATION, tokenHeader))
+            .andExpect(status().isOk());
+
+        verify(blacklistTokenService).revokeAllSessions(eq(tokenHeader));
+    }
 }
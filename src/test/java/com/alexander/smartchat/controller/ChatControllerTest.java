@@ -59,7 +59,7 @@ class ChatControllerTest {
     @DisplayName("GET /api/chats?userId -> 200 OK with chat list")
     @WithMockUser(username = "test", roles = "USER")
     void getUserChats_ShouldReturnChats() throws Exception {
-        when(chatService.getUserChats(userId)).thenReturn(List.of(buildResponseDto()));
+        when(chatService.getUserChats(userId, 0, 50)).thenReturn(List.of(buildResponseDto()));
 
         mockMvc.perform(get("/api/chats")
                 .param("userId", userId.toString()))
@@ -67,7 +67,7 @@ class ChatControllerTest {
             .andExpect(jsonPath("$.length()").value(1))
             .andExpect(jsonPath("$[0].id").value(chatId.toString()));
 
-        verify(chatService).getUserChats(userId);
+        verify(chatService).getUserChats(userId, 0, 50);
     }
 
     @Test
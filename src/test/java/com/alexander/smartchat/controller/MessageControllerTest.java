@@ -1,10 +1,16 @@
 package com.alexander.smartchat.controller;
 
+import com.alexander.smartchat.dto.MessageHistoryDto;
 import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.dto.ActivityResolution;
+import com.alexander.smartchat.dto.ActivityStatsDto;
+import com.alexander.smartchat.dto.CountMode;
 import com.alexander.smartchat.dto.MessageSearchDto;
 import com.alexander.smartchat.dto.MessageStatsDto;
+import com.alexander.smartchat.dto.SearchMode;
 import com.alexander.smartchat.exception.GlobalExceptionHandler;
 import com.alexander.smartchat.service.MessageService;
+import com.alexander.smartchat.service.analytics.ActivityAggregator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -23,6 +29,7 @@ import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -39,6 +46,9 @@ class MessageControllerTest {
     @MockitoBean
     private MessageService messageService;
 
+    @MockitoBean
+    private ActivityAggregator activityAggregator;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -50,22 +60,26 @@ class MessageControllerTest {
     @WithMockUser(username = "test", roles = "USER")
     void getMessages_ShouldReturnList() throws Exception {
         MessageResponseDto dto = new MessageResponseDto(UUID.randomUUID(), chatId, userId, "msg", Instant.now());
-        when(messageService.getMessages(eq(chatId), anyInt())).thenReturn(List.of(dto));
+        when(messageService.getMessages(eq(chatId), anyInt(), eq("cursor"), isNull()))
+            .thenReturn(new MessageHistoryDto(List.of(dto), "older", "newer"));
 
         mockMvc.perform(get("/api/messages")
-                .param("chatId", chatId.toString()))
+                .param("chatId", chatId.toString())
+                .param("before", "cursor"))
             .andExpect(status().isOk())
-            .andExpect(jsonPath("$[0].text").value("msg"));
+            .andExpect(jsonPath("$[0].text").value("msg"))
+            .andExpect(header().string("X-Next-Cursor", "older"))
+            .andExpect(header().string("X-Prev-Cursor", "newer"));
 
-        verify(messageService).getMessages(chatId, 50);
+        verify(messageService).getMessages(chatId, 50, "cursor", null);
     }
 
     @Test
     @DisplayName("GET /api/messages/search -> 200 & stats")
     @WithMockUser(username = "test", roles = "USER")
     void search_ShouldReturnSearchDto() throws Exception {
-        MessageSearchDto searchDto = new MessageSearchDto(List.of(), 0L);
-        when(messageService.search(eq(chatId), eq("txt"), anyInt())).thenReturn(searchDto);
+        MessageSearchDto searchDto = new MessageSearchDto(List.of(), 0L, CountMode.EXACT, false);
+        when(messageService.search(eq(chatId), eq("txt"), anyInt(), eq(0), eq(SearchMode.FTS), eq(CountMode.CAPPED))).thenReturn(searchDto);
 
         mockMvc.perform(get("/api/messages/search")
                 .param("chatId", chatId.toString())
@@ -73,7 +87,7 @@ class MessageControllerTest {
             .andExpect(status().isOk())
             .andExpect(content().json(objectMapper.writeValueAsString(searchDto)));
 
-        verify(messageService).search(chatId, "txt", 50);
+        verify(messageService).search(chatId, "txt", 50, 0, SearchMode.FTS, CountMode.CAPPED);
     }
 
     @Test
@@ -91,4 +105,20 @@ class MessageControllerTest {
 
         verify(messageService).getStats(chatId);
     }
+
+    @Test
+    @DisplayName("GET /api/messages/stats/activity -> 200 & activity")
+    @WithMockUser(username = "test", roles = "USER")
+    void getActivity_ShouldReturnActivityDto() throws Exception {
+        ActivityStatsDto activity = new ActivityStatsDto(chatId, ActivityResolution.HOUR, List.of(), 4, 2, List.of());
+        when(activityAggregator.getActivity(chatId, ActivityResolution.HOUR, 24, 10)).thenReturn(activity);
+
+        mockMvc.perform(get("/api/messages/stats/activity")
+                .param("chatId", chatId.toString())
+                .param("resolution", "hour")
+                .param("buckets", "24"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.messages").value(4))
+            .andExpect(jsonPath("$.activeSenders").value(2));
+    }
 }
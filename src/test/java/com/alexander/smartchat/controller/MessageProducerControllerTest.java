@@ -1,7 +1,10 @@
 package com.alexander.smartchat.controller;
 
+import com.alexander.smartchat.dto.BulkMessageResultDto;
+import com.alexander.smartchat.dto.MessageAcceptedDto;
 import com.alexander.smartchat.dto.MessageRequestDto;
 import com.alexander.smartchat.exception.GlobalExceptionHandler;
+import com.alexander.smartchat.service.kafka.producer.DeliveryMode;
 import com.alexander.smartchat.service.kafka.producer.MessageProducerService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -14,11 +17,21 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -44,11 +57,47 @@ class MessageProducerControllerTest {
             "Test message"
         );
 
-        mockMvc.perform(post("/api/messages")
+        UUID messageId = UUID.randomUUID();
+        when(messageProducerService.sendMessage(Mockito.refEq(dto), eq(DeliveryMode.LEADER_ACK)))
+            .thenReturn(CompletableFuture.completedFuture(new MessageAcceptedDto(messageId, DeliveryMode.LEADER_ACK, 1, 7L)));
+
+        MvcResult result = mockMvc.perform(post("/api/messages")
+                .param("ack", "leader-ack")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(dto)))
-            .andExpect(status().isAccepted());
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.id").value(messageId.toString()))
+            .andExpect(jsonPath("$.deliveryMode").value("leader-ack"));
+
+        verify(messageProducerService).sendMessage(Mockito.refEq(dto), eq(DeliveryMode.LEADER_ACK));
+    }
+
+    @Test
+    @WithMockUser(username = "test", roles = "USER")
+    void sendMessages_NdjsonRequest_ReturnsPerItemResults() throws Exception {
+        MessageRequestDto first = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), "first");
+        MessageRequestDto second = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), "second");
+        UUID messageId = UUID.randomUUID();
+        when(messageProducerService.sendMessages(argThat(messages -> messages.size() == 2), isNull()))
+            .thenReturn(CompletableFuture.completedFuture(List.of(
+                new BulkMessageResultDto(0, messageId, BulkMessageResultDto.Status.ACCEPTED, 0, 1L, null),
+                new BulkMessageResultDto(1, null, BulkMessageResultDto.Status.REJECTED, null, null, "error"))));
+
+        MvcResult result = mockMvc.perform(post("/api/messages/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$[0].id").value(messageId.toString()))
+            .andExpect(jsonPath("$[1].status").value("REJECTED"));
 
-        verify(messageProducerService).sendMessage(Mockito.refEq(dto));
+        verify(messageProducerService).sendMessages(List.of(first, second), null);
     }
 }
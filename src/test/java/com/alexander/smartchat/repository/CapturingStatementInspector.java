@@ -0,0 +1,23 @@
+package com.alexander.smartchat.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class CapturingStatementInspector implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static List<String> drain() {
+        List<String> captured = List.copyOf(STATEMENTS);
+        STATEMENTS.clear();
+        return captured;
+    }
+}
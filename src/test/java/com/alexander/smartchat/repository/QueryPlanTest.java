@@ -0,0 +1,255 @@
+package com.alexander.smartchat.repository;
+
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.dto.MessageSearchHitDto;
+import com.alexander.smartchat.entity.Chat;
+import com.alexander.smartchat.entity.ChatMessage;
+import com.alexander.smartchat.entity.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Строит generic-план (EXPLAIN (GENERIC_PLAN), PostgreSQL 16+) для каждого SQL, который Hibernate
+ * генерирует для запросов репозиториев, и падает, если на заполненной базе где-то остался Seq Scan.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.hibernate.ddl-auto=none",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.alexander.smartchat.repository.CapturingStatementInspector"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\?");
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private UUID chatId;
+    private UUID senderId;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.execute("INSERT INTO users (id, username, password, role) "
+            + "SELECT gen_random_uuid(), 'user' || g, 'secret', 'USER' FROM generate_series(1, 2000) g");
+        jdbcTemplate.execute("INSERT INTO chats (id, name) "
+            + "SELECT gen_random_uuid(), 'chat ' || g FROM generate_series(1, 1000) g");
+        jdbcTemplate.execute("INSERT INTO chat_users (chat_id, user_id) "
+            + "SELECT c.id, u.id "
+            + "FROM (SELECT id, row_number() OVER () AS rn FROM chats) c "
+            + "JOIN (SELECT id, row_number() OVER () AS rn FROM users) u ON u.rn % 1000 = c.rn % 1000");
+        jdbcTemplate.execute("INSERT INTO chat_messages (id, chat_id, sender_id, text, sent_at) "
+            + "SELECT gen_random_uuid(), cu.chat_id, cu.user_id, 'message ' || g, now() - g * interval '1 second' "
+            + "FROM chat_users cu, generate_series(1, 50) g");
+        jdbcTemplate.execute("INSERT INTO chat_sender_stats (chat_id, sender_id, message_count) "
+            + "SELECT chat_id, sender_id, count(*) FROM chat_messages GROUP BY chat_id, sender_id");
+        jdbcTemplate.execute("ANALYZE");
+        jdbcTemplate.execute("CREATE FUNCTION explain_generic(query text) RETURNS json AS $$ "
+            + "DECLARE plan json; "
+            + "BEGIN EXECUTE 'EXPLAIN (GENERIC_PLAN, FORMAT JSON) ' || query INTO plan; RETURN plan; END "
+            + "$$ LANGUAGE plpgsql");
+    }
+
+    @BeforeEach
+    void setUp() {
+        chatId = jdbcTemplate.queryForObject("SELECT chat_id FROM chat_users LIMIT 1", UUID.class);
+        senderId = jdbcTemplate.queryForObject("SELECT user_id FROM chat_users WHERE chat_id = ? LIMIT 1", UUID.class, chatId);
+        CapturingStatementInspector.drain();
+    }
+
+    @Test
+    @DisplayName("Первая страница истории чата идет по индексу")
+    void findByChatIdOrderBySentAtDescIdDesc_ShouldUseIndex() {
+        messageRepository.findByChatIdOrderBySentAtDescIdDesc(chatId, PageRequest.of(0, 50));
+        assertNoSeqScan();
+    }
+
+    @Test
+    @DisplayName("Страницы истории по курсору идут по индексу")
+    void cursorPages_ShouldUseIndex() {
+        messageRepository.findOlder(chatId, Instant.now(), UUID.randomUUID(), PageRequest.of(0, 50));
+        messageRepository.findNewer(chatId, Instant.EPOCH, UUID.randomUUID(), PageRequest.of(0, 50));
+        assertNoSeqScan();
+    }
+
+    @Test
+    @DisplayName("Статистика чата читается по первичному ключу счетчиков, сверка идет по индексам")
+    void senderStats_ShouldUseIndex() {
+        assertThat(explain(numberPlaceholders(MessageRepositoryCustomImpl.SENDER_STATS_SQL))).doesNotContain("Seq Scan");
+        assertThat(explain(numberPlaceholders(MessageRepositoryCustomImpl.RECONCILE_STATS_SQL))).doesNotContain("Seq Scan");
+    }
+
+    @Test
+    @DisplayName("Прогрев кеша находит активные чаты и читает их последние сообщения по индексу")
+    void warmUpQueries_ShouldReturnRecentMessagesOfActiveChats() {
+        assertThat(explain(numberPlaceholders(MessageRepositoryCustomImpl.RECENT_BY_CHATS_SQL))).doesNotContain("Seq Scan");
+
+        List<UUID> active = messageRepository.findMostActiveChatIds(Instant.now().minusSeconds(3600), 5);
+        assertThat(active).hasSize(5).doesNotHaveDuplicates();
+
+        List<UUID> expected = messageRepository.findByChatIdOrderBySentAtDescIdDesc(chatId, PageRequest.of(0, 3)).stream()
+            .map(ChatMessage::getId)
+            .toList();
+        assertThat(messageRepository.findRecentByChatIds(List.of(chatId), 3))
+            .extracting(MessageResponseDto::id)
+            .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("Счетчики отправителей растут вместе со вставкой, а сверка исправляет расхождения")
+    void senderStats_ShouldFollowInsertsAndReconcile() {
+        UUID statsChatId = jdbcTemplate.queryForObject("SELECT chat_id FROM chat_users ORDER BY chat_id DESC LIMIT 1",
+            UUID.class);
+        UUID statsSenderId = jdbcTemplate.queryForObject(
+            "SELECT user_id FROM chat_users WHERE chat_id = ? ORDER BY user_id LIMIT 1", UUID.class, statsChatId);
+        jdbcTemplate.update("DELETE FROM chat_sender_stats WHERE chat_id = ?", statsChatId);
+
+        assertThat(messageRepository.reconcileSenderStats(statsChatId)).isEqualTo(2);
+        assertThat(messageRepository.findSenderStats(statsChatId)).hasSize(2).containsEntry(statsSenderId, 50L);
+
+        ChatMessage message = ChatMessage.builder()
+            .id(UUID.randomUUID())
+            .chat(Chat.builder().id(statsChatId).build())
+            .sender(User.builder().id(statsSenderId).build())
+            .text("stats check")
+            .sentAt(Instant.now())
+            .build();
+        messageRepository.insertIgnoringDuplicates(List.of(message));
+        messageRepository.insertIgnoringDuplicates(List.of(message));
+
+        assertThat(messageRepository.findSenderStats(statsChatId)).containsEntry(statsSenderId, 51L);
+        assertThat(messageRepository.reconcileSenderStats(statsChatId)).isZero();
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск идет по GIN-индексу и возвращает подсвеченные фрагменты")
+    void fullTextSearch_ShouldUseGinIndex() {
+        assertThat(explain(numberPlaceholders(MessageRepositoryCustomImpl.FULL_TEXT_SEARCH_SQL))).doesNotContain("Seq Scan");
+        assertThat(explain(countSql(MessageRepositoryCustomImpl.EXACT_COUNT_SQL, MessageRepositoryCustomImpl.FULL_TEXT_WHERE)))
+            .doesNotContain("Seq Scan")
+            .contains("Bitmap Index Scan");
+        assertThat(explain(countSql(MessageRepositoryCustomImpl.CAPPED_COUNT_SQL, MessageRepositoryCustomImpl.FULL_TEXT_WHERE)))
+            .doesNotContain("Seq Scan")
+            .contains("Limit");
+
+        List<MessageSearchHitDto> hits = messageRepository.searchFullText(chatId, "messa:* & 42:*", 10, 0);
+        assertThat(hits).isNotEmpty().allSatisfy(hit -> assertThat(hit.snippet()).contains("<mark>"));
+        assertThat(messageRepository.countFullText(chatId, "messa:* & 42:*", CountMode.EXACT, 0)).isEqualTo(hits.size());
+        assertThat(messageRepository.countFullText(chatId, "messa:* & 42:*", CountMode.CAPPED, 1)).isEqualTo(Math.min(hits.size(), 2));
+        assertThat(messageRepository.countFullText(chatId, "messa:*", CountMode.ESTIMATED, 0)).isPositive();
+    }
+
+    @Test
+    @DisplayName("Поиск подстроки ограничен индексами чата")
+    void substringSearch_ShouldUseIndex() {
+        assertThat(explain(numberPlaceholders(MessageRepositoryCustomImpl.SUBSTRING_SEARCH_SQL))).doesNotContain("Seq Scan");
+        assertThat(explain(countSql(MessageRepositoryCustomImpl.CAPPED_COUNT_SQL, MessageRepositoryCustomImpl.SUBSTRING_WHERE)))
+            .doesNotContain("Seq Scan");
+
+        assertThat(messageRepository.countSubstring(chatId, "age 4", CountMode.EXACT, 0)).isPositive();
+        assertThat(messageRepository.countSubstring(chatId, "age 4", CountMode.ESTIMATED, 0)).isPositive();
+    }
+
+    @Test
+    @DisplayName("Загрузка и проверка чатов и пользователей по идентификаторам идут по первичному ключу")
+    void chatLookups_ShouldUseIndex() {
+        chatRepository.findById(chatId);
+        chatRepository.findAllById(Set.of(chatId, UUID.randomUUID()));
+        chatRepository.findExistingIds(Set.of(chatId, UUID.randomUUID()));
+        userRepository.findExistingIds(Set.of(senderId, UUID.randomUUID()));
+        assertNoSeqScan();
+    }
+
+    @Test
+    @DisplayName("Чаты пользователя ищутся по индексу chat_users(user_id), участники грузятся одним запросом")
+    void chatsOfUser_ShouldUseIndex() {
+        List<UUID> chatIds = chatRepository.findIdsByMember(senderId);
+        assertThat(chatIds).contains(chatId);
+
+        List<Chat> chats = chatRepository.findWithUsersByIdIn(chatIds);
+        assertThat(chats).allSatisfy(chat -> assertThat(chat.getUsers()).extracting(User::getId).contains(senderId));
+
+        assertThat(CapturingStatementInspector.drain()).hasSize(2).allSatisfy(sql ->
+            assertThat(explain(numberPlaceholders(sql))).as("план запроса %s", sql).doesNotContain("Seq Scan"));
+    }
+
+    private void assertNoSeqScan() {
+        List<String> statements = CapturingStatementInspector.drain();
+        assertThat(statements).as("Hibernate не выполнил ни одного запроса").isNotEmpty();
+        for (String sql : statements) {
+            assertThat(explain(numberPlaceholders(sql)))
+                .as("план запроса %s", sql)
+                .doesNotContain("Seq Scan");
+        }
+    }
+
+    private List<String> explain(String sql) {
+        String json = jdbcTemplate.queryForObject("SELECT explain_generic(?)::text", String.class, sql);
+        List<String> nodeTypes = new ArrayList<>();
+        try {
+            collectNodeTypes(objectMapper.readTree(json).get(0).get("Plan"), nodeTypes);
+        } catch (Exception e) {
+            throw new IllegalStateException("Не удалось разобрать план: " + json, e);
+        }
+        return nodeTypes;
+    }
+
+    private static void collectNodeTypes(JsonNode plan, List<String> nodeTypes) {
+        nodeTypes.add(plan.get("Node Type").asText());
+        if (plan.has("Plans")) {
+            plan.get("Plans").forEach(child -> collectNodeTypes(child, nodeTypes));
+        }
+    }
+
+    private static String countSql(String template, String where) {
+        return numberPlaceholders(template.formatted(where));
+    }
+
+    private static String numberPlaceholders(String sql) {
+        Matcher matcher = PLACEHOLDER.matcher(sql);
+        StringBuilder numbered = new StringBuilder();
+        int index = 0;
+        while (matcher.find()) {
+            matcher.appendReplacement(numbered, "\\$" + ++index);
+        }
+        return matcher.appendTail(numbered).toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.dto.ActivityBucketDto;
+import com.alexander.smartchat.dto.ActivityResolution;
+import com.alexander.smartchat.dto.ActivityStatsDto;
+import com.alexander.smartchat.dto.MessageRequestDto;
+import com.alexander.smartchat.service.analytics.ActivityAggregator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityAggregatorTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-10T12:30:30Z");
+
+    private ActivityAggregator aggregator;
+    private UUID chatId;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new ActivityAggregator(1 << 24, 8, 12, 8);
+        aggregator.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+        chatId = UUID.randomUUID();
+    }
+
+    @Test
+    void getActivity_ShouldBucketMessagesByEventTime() {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        aggregator.record(chatId, alice, NOW.toEpochMilli());
+        aggregator.record(chatId, alice, NOW.minusSeconds(5).toEpochMilli());
+        aggregator.record(chatId, bob, NOW.minusSeconds(60).toEpochMilli());
+
+        ActivityStatsDto stats = aggregator.getActivity(chatId, ActivityResolution.MINUTE, 3, 5);
+
+        assertThat(stats.buckets()).extracting(ActivityBucketDto::start).containsExactly(
+            Instant.parse("2026-03-10T12:28:00Z"), Instant.parse("2026-03-10T12:29:00Z"), Instant.parse("2026-03-10T12:30:00Z"));
+        assertThat(stats.buckets()).extracting(ActivityBucketDto::messages).containsExactly(0L, 1L, 2L);
+        assertThat(stats.buckets()).extracting(ActivityBucketDto::activeSenders).containsExactly(0L, 1L, 1L);
+        assertThat(stats.messages()).isEqualTo(3);
+        assertThat(stats.activeSenders()).isEqualTo(2);
+        assertThat(stats.topSenders()).first().satisfies(top -> {
+            assertThat(top.senderId()).isEqualTo(alice);
+            assertThat(top.messages()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void getActivity_ShouldDropEventsOlderThanWindow() {
+        UUID sender = UUID.randomUUID();
+        aggregator.record(chatId, sender, NOW.toEpochMilli());
+        aggregator.record(chatId, sender, NOW.minusSeconds(3600).toEpochMilli());
+
+        assertThat(aggregator.getActivity(chatId, ActivityResolution.MINUTE, 60, 5).messages()).isEqualTo(1);
+        assertThat(aggregator.getActivity(chatId, ActivityResolution.HOUR, 24, 5).messages()).isEqualTo(2);
+    }
+
+    @Test
+    void getActivity_ShouldAggregateAllChats_WhenChatIdIsNull() {
+        aggregator.record(chatId, UUID.randomUUID(), NOW.toEpochMilli());
+        aggregator.record(UUID.randomUUID(), UUID.randomUUID(), NOW.toEpochMilli());
+
+        ActivityStatsDto global = aggregator.getActivity(null, ActivityResolution.DAY, 7, 5);
+
+        assertThat(global.messages()).isEqualTo(2);
+        assertThat(global.activeSenders()).isEqualTo(2);
+        assertThat(aggregator.getActivity(UUID.randomUUID(), ActivityResolution.DAY, 7, 5).messages()).isZero();
+    }
+
+    @Test
+    void consume_ShouldSkipUndecodableRecords() {
+        var message = new MessageRequestDto(chatId, UUID.randomUUID(), "hi");
+
+        aggregator.consume(List.of(record(message), record(null)));
+
+        assertThat(aggregator.getActivity(chatId, ActivityResolution.MINUTE, 1, 1).messages()).isEqualTo(1);
+    }
+
+    private static ConsumerRecord<String, MessageRequestDto> record(MessageRequestDto value) {
+        return new ConsumerRecord<>("chat-messages", 0, 0, NOW.toEpochMilli(), TimestampType.CREATE_TIME,
+            0, 0, null, value, new RecordHeaders(), Optional.empty());
+    }
+}
@@ -96,7 +96,7 @@ class AuthServiceTest {
         User user = User.builder().username("bob").password("hashed").role(Role.USER).build();
         when(userRepository.findByUsername("bob")).thenReturn(Optional.of(user));
         when(passwordEncoder.matches("secret", "hashed")).thenReturn(true);
-        when(jwtProvider.generateAccessToken(user)).thenReturn("accessToken");
+        when(jwtProvider.generateAccessToken(user, 0L)).thenReturn("accessToken");
         when(jwtProvider.generateRefreshToken(user)).thenReturn("refreshToken");
 
         LoginResponse resp = authService.login(loginReq);
@@ -130,7 +130,7 @@ class AuthServiceTest {
     @Test
     @DisplayName("Получение access токена должно выбрасывать исключение, если refresh токен недействителен")
     void getAccessToken_ShouldThrowAuthException_WhenRefreshInvalid() {
-        when(jwtProvider.validateRefreshToken("badToken")).thenReturn(false);
+        when(jwtProvider.parseRefreshToken("badToken")).thenReturn(Optional.empty());
 
         AuthException ex = assertThrows(AuthException.class, () -> authService.getAccessToken("badToken"));
         assertEquals("Токен обновления недействителен или истек", ex.getMessage());
@@ -141,14 +141,13 @@ class AuthServiceTest {
     void getAccessToken_ShouldReturnNewAccessToken_WhenValidAndMatches() {
         String refresh = "validRefresh";
         Claims claims = mock(Claims.class);
-        when(jwtProvider.validateRefreshToken(refresh)).thenReturn(true);
-        when(jwtProvider.getRefreshClaims(refresh)).thenReturn(claims);
+        when(jwtProvider.parseRefreshToken(refresh)).thenReturn(Optional.of(claims));
         when(claims.getSubject()).thenReturn("carol");
         when(tokenService.getUserToken("carol")).thenReturn(new JwtResponse("oldAccess", "validRefresh"));
 
         User user = User.builder().username("carol").build();
         when(userRepository.findByUsername("carol")).thenReturn(Optional.of(user));
-        when(jwtProvider.generateAccessToken(user)).thenReturn("newAccess");
+        when(jwtProvider.generateAccessToken(user, 0L)).thenReturn("newAccess");
 
         LoginResponse resp = authService.getAccessToken(refresh);
 
@@ -161,8 +160,7 @@ class AuthServiceTest {
     void getAccessToken_ShouldReturnNullTokens_WhenValidButMismatch() {
         String refresh = "validRefresh";
         Claims claims = mock(Claims.class);
-        when(jwtProvider.validateRefreshToken(refresh)).thenReturn(true);
-        when(jwtProvider.getRefreshClaims(refresh)).thenReturn(claims);
+        when(jwtProvider.parseRefreshToken(refresh)).thenReturn(Optional.of(claims));
         when(claims.getSubject()).thenReturn("dave");
         when(tokenService.getUserToken("dave")).thenReturn(new JwtResponse("oldAccess", "otherRefresh"));
 
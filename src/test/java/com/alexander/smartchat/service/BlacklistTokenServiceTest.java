@@ -0,0 +1,111 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.entity.Role;
+import com.alexander.smartchat.entity.User;
+import com.alexander.smartchat.exception.AuthException;
+import com.alexander.smartchat.service.jwt.JwtProvider;
+import com.alexander.smartchat.service.jwt.VerifiedTokenCache;
+import com.alexander.smartchat.service.redis.RevokedTokenFilter;
+import com.alexander.smartchat.util.JwtParseUtil;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlacklistTokenServiceTest {
+
+    private static final String ACCESS_SECRET = "YWNjZXNzLXNlY3JldC1mb3ItdGVzdHMtYWNjZXNzLXNlY3JldC1mb3ItdGVzdHM=";
+    private static final String REFRESH_SECRET = "cmVmcmVzaC1zZWNyZXQtZm9yLXRlc3RzLXJlZnJlc2gtc2VjcmV0LWZvci10ZXN0cw==";
+
+    @Mock
+    private TokenService tokenService;
+
+    @Mock
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Mock
+    private RevokedTokenFilter revokedTokenFilter;
+
+    private JwtProvider jwtProvider;
+    private BlacklistTokenService blacklistTokenService;
+    private String accessToken;
+    private Claims claims;
+
+    @BeforeEach
+    void setUp() {
+        jwtProvider = new JwtProvider(ACCESS_SECRET, REFRESH_SECRET);
+        ReflectionTestUtils.setField(jwtProvider, "accessValidity", 15L);
+        blacklistTokenService = new BlacklistTokenService(jwtProvider, tokenService, verifiedTokenCache, revokedTokenFilter);
+        accessToken = jwtProvider.generateAccessToken(User.builder().username("alice").role(Role.USER).build(), 2);
+        claims = jwtProvider.getAccessClaims(accessToken);
+    }
+
+    @Test
+    @DisplayName("Токен, исключенный локальным фильтром, не должен проверяться в Redis")
+    void isBlacklisted_ShouldSkipRedis_WhenFilterRulesTokenOut() {
+        when(revokedTokenFilter.mightBeRevoked(any())).thenReturn(false);
+
+        assertThat(blacklistTokenService.isBlacklisted(accessToken, claims)).isFalse();
+
+        verifyNoInteractions(tokenService);
+    }
+
+    @Test
+    @DisplayName("При срабатывании фильтра отзыв должен проверяться по jti и версии токена")
+    void isBlacklisted_ShouldCheckJtiAndVersion_WhenFilterHits() {
+        when(revokedTokenFilter.mightBeRevoked(any())).thenReturn(true);
+        when(tokenService.isRevoked(claims.getId(), "alice", 2)).thenReturn(true);
+
+        assertThat(blacklistTokenService.isBlacklisted(accessToken, claims)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Выход должен отзывать токен по jti на оставшееся время жизни")
+    void saveTokenBlackList_ShouldRevokeByJtiUntilExpiry() {
+        blacklistTokenService.saveTokenBlackList("Bearer " + accessToken);
+
+        ArgumentCaptor<Duration> ttl = ArgumentCaptor.forClass(Duration.class);
+        verify(tokenService).revokeToken(eq(claims.getId()), ttl.capture());
+        assertThat(ttl.getValue()).isPositive().isLessThanOrEqualTo(Duration.ofMinutes(15));
+        verify(revokedTokenFilter).revoke(JwtParseUtil.digest(claims.getId()), claims.getExpiration().toInstant());
+        verify(verifiedTokenCache).invalidate(accessToken);
+    }
+
+    @Test
+    @DisplayName("Выход со всех устройств должен увеличивать версию токенов и удалять refresh-токен")
+    void revokeAllSessions_ShouldBumpVersionAndDropRefreshToken() {
+        when(tokenService.incrementTokenVersion("alice")).thenReturn(3L);
+
+        blacklistTokenService.revokeAllSessions("Bearer " + accessToken);
+
+        verify(tokenService).incrementTokenVersion("alice");
+        verify(tokenService).removeUserToken("alice");
+        verify(revokedTokenFilter).revoke(eq(JwtParseUtil.digest("user:alice")), any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("Выход со всех устройств должен отклонять отозванный или устаревший токен")
+    void revokeAllSessions_ShouldReject_WhenTokenRevoked() {
+        when(tokenService.isRevoked(claims.getId(), "alice", 2)).thenReturn(true);
+
+        assertThatThrownBy(() -> blacklistTokenService.revokeAllSessions("Bearer " + accessToken))
+            .isInstanceOf(AuthException.class);
+
+        verify(tokenService, never()).incrementTokenVersion(anyString());
+        verify(tokenService, never()).removeUserToken(anyString());
+        verifyNoInteractions(revokedTokenFilter);
+    }
+}
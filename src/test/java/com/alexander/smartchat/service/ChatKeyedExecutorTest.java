@@ -0,0 +1,63 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.service.kafka.consumer.ChatKeyedExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatKeyedExecutorTest {
+
+    private final ChatKeyedExecutor executor = new ChatKeyedExecutor(4, true);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.destroy();
+    }
+
+    @Test
+    void submit_ShouldPreserveOrderWithinChat() {
+        UUID chatId = UUID.randomUUID();
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<?>[] futures = IntStream.range(0, 1_000)
+            .mapToObj(i -> executor.submit(chatId, () -> processed.add(i)))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+
+        assertThat(processed).containsExactlyElementsOf(IntStream.range(0, 1_000).boxed().toList());
+    }
+
+    @Test
+    void submit_ShouldRunSameChatOnSameLane() {
+        UUID chatId = UUID.randomUUID();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        CompletableFuture<?>[] futures = IntStream.range(0, 100)
+            .mapToObj(i -> executor.submit(chatId, () -> threads.add(Thread.currentThread().getName())))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+
+        assertThat(threads).containsExactly("chat-lane-" + executor.laneOf(chatId));
+    }
+
+    @Test
+    void laneOf_ShouldSpreadChatsAcrossLanes() {
+        Set<Integer> lanes = IntStream.range(0, 200)
+            .mapToObj(i -> executor.laneOf(UUID.randomUUID()))
+            .collect(Collectors.toSet());
+
+        assertThat(executor.size()).isEqualTo(4);
+        assertThat(lanes).hasSize(4);
+    }
+}
@@ -8,6 +8,8 @@ import com.alexander.smartchat.entity.User;
 import com.alexander.smartchat.mapper.ChatMapper;
 import com.alexander.smartchat.repository.ChatRepository;
 import com.alexander.smartchat.repository.UserRepository;
+import com.alexander.smartchat.service.redis.ChatMembershipCache;
+import com.alexander.smartchat.service.redis.RedisCacheService;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -18,6 +20,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,6 +37,15 @@ class ChatServiceTest {
     @Mock
     private ChatMapper chatMapper;
 
+    @Mock
+    private RedisCacheService redisCacheService;
+
+    @Mock
+    private ChatMembershipCache chatMembershipCache;
+
+    @Mock
+    private KnownEntityIds knownEntityIds;
+
     @InjectMocks
     private ChatService chatService;
 
@@ -60,24 +72,33 @@ class ChatServiceTest {
     }
 
     @Test
-    @DisplayName("getUserChats    ,    ")
+    @DisplayName("getUserChats должен вернуть список чатов, в которых есть пользователь")
     void getUserChats_ShouldReturnUserChats() {
-        when(chatRepository.findAll()).thenReturn(List.of(chat));
-        UserResponseDto userResponseDto = new UserResponseDto(user.getId(), user.getRole(), user.getUsername(),
-            user.getEmail());
-        ChatResponseDto responseDto = new ChatResponseDto(chat.getId(), chat.getName(), Set.of(userResponseDto));
-        when(chatMapper.toDto(chat)).thenReturn(responseDto);
+        Chat other = Chat.builder().id(UUID.randomUUID()).name("other chat").users(new HashSet<>(Set.of(user))).build();
+        when(chatMembershipCache.getChatIds(eq(userId), any()))
+            .thenAnswer(invocation -> invocation.<Supplier<List<UUID>>>getArgument(1).get());
+        when(chatRepository.findIdsByMember(userId)).thenReturn(List.of(chatId, other.getId()));
+        when(chatRepository.findWithUsersByIdIn(List.of(other.getId()))).thenReturn(List.of(other));
+        ChatResponseDto responseDto = new ChatResponseDto(other.getId(), other.getName(), Set.of());
+        when(chatMapper.toDto(other)).thenReturn(responseDto);
+
+        List<ChatResponseDto> result = chatService.getUserChats(userId, 1, 1);
+
+        assertEquals(List.of(responseDto), result);
+        verify(chatRepository, never()).findAll();
+    }
 
-        List<ChatResponseDto> result = chatService.getUserChats(userId);
+    @Test
+    @DisplayName("getUserChats не обращается к базе за чатами, если страница за пределами списка")
+    void getUserChats_ShouldReturnEmpty_WhenPageIsOutOfRange() {
+        when(chatMembershipCache.getChatIds(eq(userId), any())).thenReturn(List.of(chatId));
 
-        assertEquals(1, result.size());
-        assertEquals(chat.getId(), result.get(0).id());
-        verify(chatRepository).findAll();
-        verify(chatMapper).toDto(chat);
+        assertTrue(chatService.getUserChats(userId, 3, 10).isEmpty());
+        verifyNoInteractions(chatRepository);
     }
 
     @Test
-    @DisplayName("createChat        ")
+    @DisplayName("createChat должен создать и вернуть новый чат с пользователями")
     void createChat_ShouldCreateChat() {
         ChatRequestDto requestDto = new ChatRequestDto("New Chat", Set.of(userId));
         Chat newChat = Chat.builder().name("New Chat").build();
@@ -97,10 +118,11 @@ class ChatServiceTest {
         assertEquals("New Chat", result.name());
         assertEquals(1, result.users().size());
         verify(chatRepository).save(newChat);
+        verify(chatMembershipCache).evictAfterCommit(List.of(userId));
     }
 
     @Test
-    @DisplayName("addUserToChat     ")
+    @DisplayName("addUserToChat должен добавить пользователя в чат")
     void addUserToChat_ShouldAddUser() {
         when(chatRepository.findById(chatId)).thenReturn(Optional.of(chat));
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
@@ -110,10 +132,11 @@ class ChatServiceTest {
         assertTrue(chat.getUsers().contains(user));
         verify(chatRepository).findById(chatId);
         verify(userRepository).findById(userId);
+        verify(chatMembershipCache).evictAfterCommit(List.of(userId));
     }
 
     @Test
-    @DisplayName("addUserToChat   ,    ")
+    @DisplayName("addUserToChat должен бросать исключение, если чат не найден")
     void addUserToChat_ShouldThrow_WhenChatNotFound() {
         when(chatRepository.findById(chatId)).thenReturn(Optional.empty());
 
@@ -124,7 +147,7 @@ class ChatServiceTest {
     }
 
     @Test
-    @DisplayName("addUserToChat   ,    ")
+    @DisplayName("addUserToChat должен бросать исключение, если пользователь не найден")
     void addUserToChat_ShouldThrow_WhenUserNotFound() {
         when(chatRepository.findById(chatId)).thenReturn(Optional.of(chat));
         when(userRepository.findById(userId)).thenReturn(Optional.empty());
@@ -134,17 +157,20 @@ class ChatServiceTest {
     }
 
     @Test
-    @DisplayName("deleteChat     id")
+    @DisplayName("deleteChat должен удалить чат по id")
     void deleteChat_ShouldDeleteChat() {
         when(chatRepository.findById(chatId)).thenReturn(Optional.of(chat));
 
         chatService.deleteChat(chatId);
 
         verify(chatRepository).delete(chat);
+        verify(knownEntityIds).evictChatAfterCommit(chatId);
+        verify(redisCacheService).clearChatCache(chatId);
+        verify(chatMembershipCache).evictAfterCommit(List.of(userId));
     }
 
     @Test
-    @DisplayName("deleteChat   ,    ")
+    @DisplayName("deleteChat должен бросать исключение, если чат не найден")
     void deleteChat_ShouldThrow_WhenChatNotFound() {
         when(chatRepository.findById(chatId)).thenReturn(Optional.empty());
 
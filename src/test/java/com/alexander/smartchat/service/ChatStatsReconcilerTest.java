@@ -0,0 +1,61 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.repository.ChatRepository;
+import com.alexander.smartchat.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatStatsReconcilerTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @InjectMocks
+    private ChatStatsReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        reconciler.setBatchSize(2);
+    }
+
+    @Test
+    void reconcile_ShouldWalkAllChatsPageByPage() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        when(chatRepository.findIdsAfter(new UUID(0, 0), PageRequest.of(0, 2))).thenReturn(List.of(first, second));
+        when(chatRepository.findIdsAfter(second, PageRequest.of(0, 2))).thenReturn(List.of(third));
+        when(messageRepository.reconcileSenderStats(any())).thenReturn(0);
+
+        reconciler.reconcile();
+
+        verify(messageRepository).reconcileSenderStats(first);
+        verify(messageRepository).reconcileSenderStats(second);
+        verify(messageRepository).reconcileSenderStats(third);
+        verify(chatRepository, times(2)).findIdsAfter(any(), any());
+    }
+
+    @Test
+    void reconcile_ShouldStop_WhenNoChats() {
+        when(chatRepository.findIdsAfter(new UUID(0, 0), PageRequest.of(0, 2))).thenReturn(List.of());
+
+        reconciler.reconcile();
+
+        verifyNoInteractions(messageRepository);
+    }
+}
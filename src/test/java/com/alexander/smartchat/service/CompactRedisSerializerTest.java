@@ -0,0 +1,93 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.dto.JwtResponse;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.service.redis.serializer.JwtResponseCompactSerializer;
+import com.alexander.smartchat.service.redis.serializer.MessageCompactSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactRedisSerializerTest {
+
+    private final Jackson2JsonRedisSerializer<MessageResponseDto> messageJson =
+        new Jackson2JsonRedisSerializer<>(new ObjectMapper().findAndRegisterModules(), MessageResponseDto.class);
+    private final GenericJackson2JsonRedisSerializer tokenJson = new GenericJackson2JsonRedisSerializer();
+
+    private final MessageCompactSerializer messageSerializer = new MessageCompactSerializer(messageJson, 256);
+    private final JwtResponseCompactSerializer tokenSerializer = new JwtResponseCompactSerializer(tokenJson, 256);
+
+    private MessageResponseDto message(String text) {
+        return new MessageResponseDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), text,
+            Instant.parse("2026-03-01T10:15:30.123456Z"));
+    }
+
+    @Test
+    void message_ShouldRoundTripWithMicrosecondPrecision() {
+        MessageResponseDto message = message("Привет, мир!");
+
+        byte[] bytes = messageSerializer.serialize(message);
+
+        assertThat(messageSerializer.deserialize(bytes)).isEqualTo(message);
+        assertThat(bytes.length).isLessThan(messageJson.serialize(message).length / 2);
+    }
+
+    @Test
+    void message_ShouldCompressLongTextOnly() {
+        String longText = "повторяющийся текст ".repeat(100);
+        MessageResponseDto shortMessage = message("ok");
+        MessageResponseDto longMessage = message(longText);
+
+        byte[] shortBytes = messageSerializer.serialize(shortMessage);
+        byte[] longBytes = messageSerializer.serialize(longMessage);
+
+        assertThat(shortBytes).hasSize(1 + 16 * 3 + 8 + 1 + 2);
+        assertThat(longBytes.length).isLessThan(longText.length() / 4);
+        assertThat(messageSerializer.deserialize(longBytes)).isEqualTo(longMessage);
+    }
+
+    @Test
+    void message_ShouldReadLegacyJson() {
+        MessageResponseDto message = message("старый формат");
+
+        assertThat(messageSerializer.deserialize(messageJson.serialize(message))).isEqualTo(message);
+    }
+
+    @Test
+    void message_ShouldRejectTruncatedValue() {
+        byte[] bytes = messageSerializer.serialize(message("обрезано"));
+
+        assertThatThrownBy(() -> messageSerializer.deserialize(Arrays.copyOf(bytes, bytes.length - 3)))
+            .isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void token_ShouldRoundTripWithNullRefreshToken() {
+        JwtResponse blacklisted = new JwtResponse("header.payload.signature", null);
+
+        assertThat(tokenSerializer.deserialize(tokenSerializer.serialize(blacklisted))).isEqualTo(blacklisted);
+    }
+
+    @Test
+    void token_ShouldReadLegacyJson() {
+        JwtResponse token = new JwtResponse("access", "refresh");
+
+        assertThat(tokenSerializer.deserialize(tokenJson.serialize(token))).isEqualTo(token);
+    }
+
+    @Test
+    void nullAndEmptyValues_ShouldMapToNull() {
+        assertThat(messageSerializer.serialize(null)).isEmpty();
+        assertThat(messageSerializer.deserialize(new byte[0])).isNull();
+        assertThat(messageSerializer.deserialize(null)).isNull();
+    }
+}
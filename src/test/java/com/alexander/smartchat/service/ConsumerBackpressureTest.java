@@ -0,0 +1,109 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.service.kafka.consumer.ConsumerBackpressure;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConsumerBackpressureTest {
+
+    private static final String LISTENER_ID = "chat-messages-batch";
+    private static final String OTHER_LISTENER_ID = "chat-messages-retry-1";
+
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+
+    @Mock
+    private MessageListenerContainer container;
+
+    @InjectMocks
+    private ConsumerBackpressure backpressure;
+
+    @BeforeEach
+    void setUp() {
+        backpressure.setHighWatermark(100);
+        backpressure.setLowWatermark(20);
+    }
+
+    @Test
+    void acquire_ShouldPauseOnce_WhenHighWatermarkReached() {
+        when(registry.getListenerContainer(LISTENER_ID)).thenReturn(container);
+
+        backpressure.acquire(LISTENER_ID, 60);
+        verify(container, never()).pause();
+
+        backpressure.acquire(LISTENER_ID, 60);
+        backpressure.acquire(LISTENER_ID, 10);
+
+        verify(container, times(1)).pause();
+        assertThat(backpressure.inFlight()).isEqualTo(130);
+    }
+
+    @Test
+    void release_ShouldResume_WhenBelowLowWatermark() {
+        when(registry.getListenerContainer(LISTENER_ID)).thenReturn(container);
+        backpressure.acquire(LISTENER_ID, 120);
+
+        backpressure.release(LISTENER_ID, 50);
+        verify(container, never()).resume();
+
+        backpressure.release(LISTENER_ID, 60);
+        verify(container, times(1)).resume();
+        assertThat(backpressure.inFlight()).isEqualTo(10);
+    }
+
+    @Test
+    void release_ShouldResumePausedListener_WhenOtherListenersKeepGlobalLoadHigh() {
+        when(registry.getListenerContainer(LISTENER_ID)).thenReturn(container);
+        backpressure.acquire(OTHER_LISTENER_ID, 50);
+        backpressure.acquire(LISTENER_ID, 100);
+        verify(container).pause();
+
+        backpressure.release(LISTENER_ID, 100);
+        backpressure.release(OTHER_LISTENER_ID, 40);
+
+        verify(container).resume();
+        assertThat(backpressure.inFlight()).isEqualTo(10);
+        assertThat(backpressure.inFlight(LISTENER_ID)).isZero();
+    }
+
+    @Test
+    void acquire_ShouldNotPauseListener_WhenOnlyOtherListenerIsBusy() {
+        when(registry.getListenerContainer(OTHER_LISTENER_ID)).thenReturn(container);
+
+        backpressure.acquire(OTHER_LISTENER_ID, 100);
+        backpressure.acquire(LISTENER_ID, 10);
+
+        verify(registry, never()).getListenerContainer(LISTENER_ID);
+        verify(container, times(1)).pause();
+    }
+
+    @Test
+    void release_ShouldNotResume_WhenNotPaused() {
+        backpressure.acquire(LISTENER_ID, 10);
+        backpressure.release(LISTENER_ID, 10);
+
+        verifyNoInteractions(registry);
+    }
+
+    @Test
+    void awaitDrained_ShouldReturnFalse_WhenWorkIsStillInFlight() throws InterruptedException {
+        backpressure.acquire(LISTENER_ID, 1);
+
+        assertThat(backpressure.awaitDrained(Duration.ofMillis(30))).isFalse();
+
+        backpressure.release(LISTENER_ID, 1);
+        assertThat(backpressure.awaitDrained(Duration.ofMillis(30))).isTrue();
+    }
+}
@@ -0,0 +1,91 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.dto.MessageRequestDto;
+import com.alexander.smartchat.exception.ResourceNotFoundException;
+import com.alexander.smartchat.service.kafka.consumer.FailedMessageRouter;
+import com.alexander.smartchat.service.kafka.consumer.MessageRetryPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FailedMessageRouterTest {
+
+    @Mock
+    private KafkaTemplate<String, MessageRequestDto> kafkaTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MessageRetryPolicy retryPolicy = new MessageRetryPolicy("chat-messages", 3, Duration.ofSeconds(1), 4.0);
+    private final MessageRequestDto message = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "text");
+
+    private FailedMessageRouter router;
+
+    @BeforeEach
+    void setUp() {
+        router = new FailedMessageRouter(kafkaTemplate, retryPolicy, meterRegistry);
+        router.setDeadLetterTopic("chat-messages-dlt");
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void route_shouldSendToNextRetryTopicWithBackoff_WhenFailureIsTransient() {
+        long before = System.currentTimeMillis();
+
+        router.route(List.of(message), 1, new IllegalStateException("db is down")).join();
+
+        ProducerRecord<String, MessageRequestDto> sent = captureSent();
+        assertThat(sent.topic()).isEqualTo("chat-messages-retry-2");
+        assertThat(sent.key()).isEqualTo(message.chatId().toString());
+        assertThat(header(sent, FailedMessageRouter.ATTEMPT_HEADER)).isEqualTo("2");
+        assertThat(Long.parseLong(header(sent, FailedMessageRouter.RETRY_AT_HEADER))).isGreaterThanOrEqualTo(before + 4000);
+        assertThat(meterRegistry.counter("smartchat.messages.failed", "outcome", "retry", "reason", "IllegalStateException").count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void route_shouldDeadLetter_WhenResourceIsMissing() {
+        router.route(List.of(message), 0, new ResourceNotFoundException("Чат не найден")).join();
+
+        ProducerRecord<String, MessageRequestDto> sent = captureSent();
+        assertThat(sent.topic()).isEqualTo("chat-messages-dlt");
+        assertThat(header(sent, FailedMessageRouter.EXCEPTION_HEADER)).isEqualTo(ResourceNotFoundException.class.getName());
+        assertThat(sent.headers().lastHeader(FailedMessageRouter.RETRY_AT_HEADER)).isNull();
+    }
+
+    @Test
+    void route_shouldDeadLetter_WhenAttemptsAreExhausted() {
+        router.route(List.of(message), 3, new IllegalStateException("db is down")).join();
+
+        assertThat(captureSent().topic()).isEqualTo("chat-messages-dlt");
+        assertThat(meterRegistry.counter("smartchat.messages.failed", "outcome", "dead-letter", "reason", "IllegalStateException").count())
+            .isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, MessageRequestDto> captureSent() {
+        ArgumentCaptor<ProducerRecord<String, MessageRequestDto>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        return captor.getValue();
+    }
+
+    private static String header(ProducerRecord<?, ?> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.entity.Role;
+import com.alexander.smartchat.entity.User;
+import com.alexander.smartchat.filter.JwtFilter;
+import com.alexander.smartchat.security.UserDetailsImpl;
+import com.alexander.smartchat.service.jwt.JwtProvider;
+import com.alexander.smartchat.service.jwt.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtFilterTest {
+
+    private static final String ACCESS_SECRET = "YWNjZXNzLXNlY3JldC1mb3ItdGVzdHMtYWNjZXNzLXNlY3JldC1mb3ItdGVzdHM=";
+    private static final String REFRESH_SECRET = "cmVmcmVzaC1zZWNyZXQtZm9yLXRlc3RzLXJlZnJlc2gtc2VjcmV0LWZvci10ZXN0cw==";
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private BlacklistTokenService blacklistTokenService;
+
+    private JwtProvider jwtProvider;
+    private JwtFilter jwtFilter;
+    private String accessToken;
+
+    @BeforeEach
+    void setUp() {
+        jwtProvider = spy(new JwtProvider(ACCESS_SECRET, REFRESH_SECRET));
+        ReflectionTestUtils.setField(jwtProvider, "accessValidity", 15L);
+        jwtFilter = new JwtFilter(new VerifiedTokenCache(jwtProvider, false, 100, new SimpleMeterRegistry()),
+            userService, blacklistTokenService);
+        accessToken = jwtProvider.generateAccessToken(User.builder().username("alice").role(Role.USER).build(), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Фильтр должен разбирать токен один раз и передавать claims дальше по цепочке")
+    void doFilter_ShouldParseTokenOnce_WhenTokenValid() throws Exception {
+        UserDetails userDetails = new UserDetailsImpl(User.builder().username("alice").password("pass").role(Role.USER).build());
+        when(blacklistTokenService.isBlacklisted(eq(accessToken), any(Claims.class))).thenReturn(false);
+        when(userService.loadUserByUsername("alice")).thenReturn(userDetails);
+        MockHttpServletRequest request = bearerRequest(accessToken);
+
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(jwtProvider, times(1)).parseAccessToken(accessToken);
+        verify(jwtProvider, never()).getAccessClaims(anyString());
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        assertThat(request.getAttribute(JwtFilter.ACCESS_CLAIMS_ATTRIBUTE))
+            .isInstanceOfSatisfying(Claims.class, claims -> assertThat(claims.getSubject()).isEqualTo("alice"));
+    }
+
+    @Test
+    @DisplayName("Фильтр не должен аутентифицировать токен из черного списка")
+    void doFilter_ShouldNotAuthenticate_WhenTokenBlacklisted() throws Exception {
+        when(blacklistTokenService.isBlacklisted(eq(accessToken), any(Claims.class))).thenReturn(true);
+        MockFilterChain chain = new MockFilterChain();
+
+        jwtFilter.doFilter(bearerRequest(accessToken), new MockHttpServletResponse(), chain);
+
+        verifyNoInteractions(userService);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(chain.getRequest()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Фильтр должен пропускать запрос без аутентификации, если токен недействителен")
+    void doFilter_ShouldSkipBlacklist_WhenTokenInvalid() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        jwtFilter.doFilter(bearerRequest(accessToken + "x"), new MockHttpServletResponse(), chain);
+
+        verifyNoInteractions(blacklistTokenService, userService);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(chain.getRequest()).isNotNull();
+    }
+
+    private static MockHttpServletRequest bearerRequest(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+}
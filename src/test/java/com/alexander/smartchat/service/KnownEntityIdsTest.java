@@ -0,0 +1,97 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.repository.ChatRepository;
+import com.alexander.smartchat.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KnownEntityIdsTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private KnownEntityIds knownEntityIds;
+
+    private final UUID chatId = UUID.randomUUID();
+    private final UUID unknownChatId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        knownEntityIds = new KnownEntityIds(chatRepository, userRepository, Duration.ofMinutes(1), 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void existingChats_ShouldQueryOnlyMissesInOneStatement() {
+        when(chatRepository.findExistingIds(Set.of(chatId, unknownChatId))).thenReturn(Set.of(chatId));
+        when(chatRepository.findExistingIds(Set.of(unknownChatId))).thenReturn(Set.of());
+
+        assertThat(knownEntityIds.existingChats(Set.of(chatId, unknownChatId))).containsExactly(chatId);
+        assertThat(knownEntityIds.existingChats(Set.of(chatId, unknownChatId))).containsExactly(chatId);
+        assertThat(knownEntityIds.chatExists(chatId)).isTrue();
+
+        verify(chatRepository).findExistingIds(Set.of(chatId, unknownChatId));
+        verify(chatRepository).findExistingIds(Set.of(unknownChatId));
+        verifyNoMoreInteractions(chatRepository);
+    }
+
+    @Test
+    void evictChat_ShouldForceRevalidation() {
+        when(chatRepository.findExistingIds(Set.of(chatId))).thenReturn(Set.of(chatId), Set.of());
+
+        assertThat(knownEntityIds.chatExists(chatId)).isTrue();
+        knownEntityIds.evictChat(chatId);
+
+        assertThat(knownEntityIds.chatExists(chatId)).isFalse();
+        verify(chatRepository, times(2)).findExistingIds(Set.of(chatId));
+    }
+
+    @Test
+    void evictChatAfterCommit_ShouldKeepEntryUntilCommit() {
+        when(chatRepository.findExistingIds(Set.of(chatId))).thenReturn(Set.of(chatId), Set.of());
+        assertThat(knownEntityIds.chatExists(chatId)).isTrue();
+        TransactionSynchronizationManager.initSynchronization();
+
+        knownEntityIds.evictChatAfterCommit(chatId);
+        assertThat(knownEntityIds.chatExists(chatId)).isTrue();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(knownEntityIds.chatExists(chatId)).isFalse();
+        verify(chatRepository, times(2)).findExistingIds(Set.of(chatId));
+    }
+
+    @Test
+    void userExists_ShouldBeCachedSeparatelyFromChats() {
+        UUID userId = UUID.randomUUID();
+        when(userRepository.findExistingIds(Set.of(userId))).thenReturn(Set.of(userId));
+
+        assertThat(knownEntityIds.userExists(userId)).isTrue();
+        assertThat(knownEntityIds.userExists(userId)).isTrue();
+
+        verify(userRepository, times(1)).findExistingIds(Set.of(userId));
+        verifyNoInteractions(chatRepository);
+    }
+}
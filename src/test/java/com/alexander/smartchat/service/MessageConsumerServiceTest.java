@@ -4,25 +4,58 @@ import com.alexander.smartchat.dto.MessageRequestDto;
 import com.alexander.smartchat.entity.Chat;
 import com.alexander.smartchat.entity.ChatMessage;
 import com.alexander.smartchat.entity.User;
+import com.alexander.smartchat.exception.ResourceNotFoundException;
+import com.alexander.smartchat.mapper.MessageMapper;
 import com.alexander.smartchat.repository.ChatRepository;
 import com.alexander.smartchat.repository.MessageRepository;
 import com.alexander.smartchat.repository.UserRepository;
+import com.alexander.smartchat.service.kafka.consumer.ChatKeyedExecutor;
+import com.alexander.smartchat.service.kafka.consumer.ConsumerBackpressure;
+import com.alexander.smartchat.service.kafka.consumer.FailedMessageRouter;
 import com.alexander.smartchat.service.kafka.consumer.MessageConsumerService;
+import com.alexander.smartchat.service.kafka.consumer.MessageRetryPolicy;
+import com.alexander.smartchat.service.kafka.consumer.OffsetCommitTracker;
+import com.alexander.smartchat.service.kafka.consumer.ProcessedMessageIds;
 import com.alexander.smartchat.service.redis.RedisCacheService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.config.KafkaListenerEndpoint;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.support.Acknowledgment;
 
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class MessageConsumerServiceTest {
 
+    private static final String TOPIC = "chat-messages";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
     @Mock
     private MessageRepository messageRepository;
 
@@ -35,32 +68,366 @@ class MessageConsumerServiceTest {
     @Mock
     private RedisCacheService redisCacheService;
 
+    @Mock
+    private ConsumerBackpressure backpressure;
+
+    @Mock
+    private FailedMessageRouter failedMessageRouter;
+
+    @Mock
+    private Acknowledgment ack;
+
+    @Mock
+    private Consumer<?, ?> consumer;
+
+    @Spy
+    private ChatKeyedExecutor chatKeyedExecutor = new ChatKeyedExecutor(2, false);
+
+    @Spy
+    private OffsetCommitTracker offsetCommitTracker = new OffsetCommitTracker();
+
+    @Spy
+    private ProcessedMessageIds processedMessageIds = new ProcessedMessageIds(Duration.ofMinutes(1), 1000);
+
+    @Mock
+    private KnownEntityIds knownEntityIds;
+
+    @Spy
+    private MessageRetryPolicy messageRetryPolicy = new MessageRetryPolicy(TOPIC, 3, Duration.ofSeconds(1), 4.0);
+
+    @Spy
+    private MessageMapper messageMapper = Mappers.getMapper(MessageMapper.class);
+
     @InjectMocks
     private MessageConsumerService consumerService;
 
     private final UUID chatId = UUID.randomUUID();
     private final UUID userId = UUID.randomUUID();
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(chatRepository.getReferenceById(any()))
+            .thenAnswer(invocation -> Chat.builder().id(invocation.getArgument(0)).build());
+        lenient().when(userRepository.getReferenceById(any()))
+            .thenAnswer(invocation -> User.builder().id(invocation.getArgument(0)).build());
+    }
+
+    private static List<ConsumerRecord<String, MessageRequestDto>> records(MessageRequestDto... dtos) {
+        List<ConsumerRecord<String, MessageRequestDto>> records = new ArrayList<>();
+        for (int i = 0; i < dtos.length; i++) {
+            records.add(new ConsumerRecord<>(TOPIC, 0, i, dtos[i].chatId().toString(), dtos[i]));
+        }
+        return records;
+    }
+
     @Test
     void consumeMessage_shouldProcessAndCacheMessage() {
         MessageRequestDto dto = new MessageRequestDto(chatId, userId, "Test message");
-        Chat chat = Chat.builder().id(chatId).build();
-        User sender = User.builder().id(userId).build();
-        ChatMessage savedMessage = ChatMessage.builder().chat(chat).sender(sender).text("Test message").build();
 
-        when(chatRepository.findById(chatId)).thenReturn(Optional.of(chat));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(sender));
-        when(messageRepository.save(any(ChatMessage.class))).thenReturn(savedMessage);
+        when(knownEntityIds.chatExists(chatId)).thenReturn(true);
+        when(knownEntityIds.userExists(userId)).thenReturn(true);
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
-        consumerService.consumeMessage(dto);
+        consumerService.consumeMessage(records(dto).get(0), ack, consumer);
 
-        try {
-            Thread.sleep(300);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        verify(messageRepository, timeout(1000)).insertIgnoringDuplicates(anyList());
+        verify(redisCacheService, timeout(1000)).cacheMessage(eq(chatId), argThat(message -> message.text().equals("Test message")));
+        verify(ack, timeout(1000)).acknowledge();
+        verify(backpressure).acquire("chat-messages-single", 1);
+        verify(backpressure, timeout(1000)).release("chat-messages-single", 1);
+        verify(chatRepository, never()).findById(any());
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    void consumeBatch_shouldResolveReferencesOnceAndSaveAll() {
+        UUID otherUserId = UUID.randomUUID();
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(
+            new MessageRequestDto(chatId, userId, "first"),
+            new MessageRequestDto(chatId, otherUserId, "second"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId, otherUserId))).thenReturn(Set.of(userId, otherUserId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(knownEntityIds, times(1)).existingChats(Set.of(chatId));
+        verify(knownEntityIds, times(1)).existingUsers(Set.of(userId, otherUserId));
+        verify(messageRepository, timeout(1000).times(1)).insertIgnoringDuplicates(argThat(messages -> messages.size() == 2));
+        verify(redisCacheService, timeout(1000).times(1)).cacheMessages(argThat(byChat -> byChat.get(chatId).size() == 2));
+        verify(ack, timeout(1000)).acknowledge();
+    }
+
+    @Test
+    void consumeBatch_shouldSkipMessagesWithUnknownChat() {
+        UUID unknownChatId = UUID.randomUUID();
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(
+            new MessageRequestDto(unknownChatId, userId, "lost"),
+            new MessageRequestDto(chatId, userId, "kept"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId, unknownChatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(failedMessageRouter.route(anyList(), eq(0), any(ResourceNotFoundException.class)))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(messageRepository, timeout(1000)).insertIgnoringDuplicates(argThat(messages -> messages.size() == 1));
+        verify(redisCacheService, timeout(1000)).cacheMessages(
+            argThat(byChat -> byChat.keySet().equals(Set.of(chatId)) && byChat.get(chatId).size() == 1));
+        verify(failedMessageRouter).route(eq(List.of(batch.get(0).value())), eq(0), any(ResourceNotFoundException.class));
+        verify(ack, timeout(1000)).acknowledge();
+    }
+
+    @Test
+    void consumeBatch_shouldKeepOrderWithinChat() {
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(
+            new MessageRequestDto(chatId, userId, "1"),
+            new MessageRequestDto(chatId, userId, "2"),
+            new MessageRequestDto(chatId, userId, "3"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(messageRepository, timeout(1000)).insertIgnoringDuplicates(argThat(messages -> {
+            List<String> texts = messages.stream().map(ChatMessage::getText).toList();
+            return texts.equals(List.of("1", "2", "3"));
+        }));
+    }
+
+    @Test
+    void consumeBatch_shouldRouteToRetryAndAcknowledge_WhenPersistenceFails() {
+        UUID messageId = UUID.randomUUID();
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(new MessageRequestDto(messageId, chatId, userId, "1"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenThrow(new IllegalStateException("db is down"));
+        when(failedMessageRouter.route(anyList(), eq(0), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(ack, timeout(1000)).acknowledge();
+        verify(failedMessageRouter).route(eq(List.of(batch.get(0).value())), eq(0), any());
+        verify(redisCacheService, never()).cacheMessages(anyMap());
+    }
+
+    @Test
+    void consumeBatch_shouldNotAcknowledgeAndRewind_WhenRetryTopicIsUnavailable() {
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(new MessageRequestDto(chatId, userId, "1"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenThrow(new IllegalStateException("db is down"));
+        when(failedMessageRouter.route(anyList(), eq(0), any()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("kafka is down")));
+        doReturn(Set.of(PARTITION)).when(consumer).assignment();
+
+        consumerService.consumeBatch(batch, ack, consumer);
+        verify(backpressure, timeout(1000)).release("chat-messages-batch", 1);
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(consumer).seek(PARTITION, 0L);
+        verify(ack, never()).acknowledge();
+        verify(messageRepository, times(1)).insertIgnoringDuplicates(anyList());
+    }
+
+    @Test
+    void consumeMessage_shouldRouteToDeadLetter_WhenChatIsMissing() {
+        MessageRequestDto dto = new MessageRequestDto(chatId, userId, "orphan");
+
+        when(knownEntityIds.chatExists(chatId)).thenReturn(false);
+        when(failedMessageRouter.route(anyList(), eq(0), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeMessage(records(dto).get(0), ack, consumer);
+
+        verify(failedMessageRouter, timeout(1000)).route(eq(List.of(dto)), eq(0),
+            argThat(ex -> ex.getCause() instanceof ResourceNotFoundException));
+        verify(ack, timeout(1000)).acknowledge();
+        verify(messageRepository, never()).insertIgnoringDuplicates(anyList());
+    }
+
+    @Test
+    void consumeBatch_shouldForgetKnownIds_WhenForeignKeyIsViolated() {
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(new MessageRequestDto(UUID.randomUUID(), chatId, userId, "1"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList()))
+            .thenThrow(new DataIntegrityViolationException("fk_message_chat"));
+        when(failedMessageRouter.route(anyList(), eq(0), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(ack, timeout(1000)).acknowledge();
+        verify(knownEntityIds).evictChat(chatId);
+        verify(knownEntityIds).evictUser(userId);
+        verify(failedMessageRouter).route(eq(List.of(batch.get(0).value())), eq(0), any());
+    }
+
+    @Test
+    void consumeBatch_shouldSkipUndecodableRecords() {
+        List<ConsumerRecord<String, MessageRequestDto>> batch = List.of(new ConsumerRecord<>(TOPIC, 0, 0, "key", null));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(failedMessageRouter).skipUndecodable(1);
+        verify(ack, timeout(1000)).acknowledge();
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void consumeRetry_shouldNackUntilRetryIsDue() {
+        ConsumerRecord<String, MessageRequestDto> record = records(new MessageRequestDto(chatId, userId, "later")).get(0);
+        record.headers().add(FailedMessageRouter.RETRY_AT_HEADER,
+            String.valueOf(System.currentTimeMillis() + 60_000).getBytes(StandardCharsets.UTF_8));
+
+        consumerService.consumeRetry(record, ack, consumer);
+
+        verify(ack).nack(argThat(wait -> wait.toMillis() > 0 && wait.toMillis() <= 60_000));
+        verify(ack, never()).acknowledge();
+        verifyNoInteractions(knownEntityIds, messageRepository);
+    }
+
+    @Test
+    void consumeRetry_shouldRouteToNextAttempt_WhenStillFailing() {
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), chatId, userId, "again");
+        ConsumerRecord<String, MessageRequestDto> record = records(dto).get(0);
+        record.headers().add(FailedMessageRouter.ATTEMPT_HEADER, "2".getBytes(StandardCharsets.UTF_8));
+
+        when(knownEntityIds.chatExists(chatId)).thenThrow(new IllegalStateException("db is down"));
+        when(failedMessageRouter.route(anyList(), eq(2), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeRetry(record, ack, consumer);
+
+        verify(failedMessageRouter, timeout(1000)).route(eq(List.of(dto)), eq(2), any());
+        verify(ack, timeout(1000)).acknowledge();
+    }
+
+    @Test
+    void consumeRetry_shouldNotBlockConsumerThread_WhileMessageIsProcessed() throws Exception {
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), chatId, userId, "slow");
+        ConsumerRecord<String, MessageRequestDto> record = records(dto).get(0);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(knownEntityIds.chatExists(chatId)).thenAnswer(invocation -> release.await(5, TimeUnit.SECONDS));
+        when(knownEntityIds.userExists(userId)).thenReturn(true);
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        consumerService.consumeRetry(record, ack, consumer);
+
+        verify(ack, never()).acknowledge();
+        release.countDown();
+        verify(ack, timeout(1000)).acknowledge();
+        verify(backpressure, timeout(1000)).release(TOPIC, 1);
+    }
+
+    @Test
+    void consumeRetry_shouldAccountInFlightUnderRetryContainerOnly() {
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), chatId, userId, "retry");
+        ConsumerRecord<String, MessageRequestDto> record =
+            new ConsumerRecord<>("chat-messages-retry-1", 0, 0, chatId.toString(), dto);
+
+        when(knownEntityIds.chatExists(chatId)).thenReturn(true);
+        when(knownEntityIds.userExists(userId)).thenReturn(true);
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        consumerService.consumeRetry(record, ack, consumer);
+
+        verify(backpressure).acquire("chat-messages-retry-1", 1);
+        verify(backpressure, timeout(1000)).release("chat-messages-retry-1", 1);
+        verify(backpressure, never()).acquire(eq("chat-messages-batch"), anyInt());
+        verify(backpressure, never()).acquire(eq("chat-messages-single"), anyInt());
+    }
+
+    @Test
+    void configureKafkaListeners_shouldRegisterOneContainerPerRetryTopic() {
+        KafkaListenerEndpointRegistrar registrar = mock(KafkaListenerEndpointRegistrar.class);
+        ArgumentCaptor<KafkaListenerEndpoint> endpoints = ArgumentCaptor.forClass(KafkaListenerEndpoint.class);
+
+        consumerService.configureKafkaListeners(registrar);
+
+        verify(registrar, times(3)).registerEndpoint(endpoints.capture());
+        assertThat(endpoints.getAllValues())
+            .flatExtracting(KafkaListenerEndpoint::getTopics)
+            .containsExactly("chat-messages-retry-1", "chat-messages-retry-2", "chat-messages-retry-3");
+        assertThat(endpoints.getAllValues())
+            .extracting(KafkaListenerEndpoint::getId)
+            .containsExactly("chat-messages-retry-1", "chat-messages-retry-2", "chat-messages-retry-3");
+    }
+
+    @Test
+    void consumeBatch_shouldUseProducerAssignedIds() {
+        UUID messageId = UUID.randomUUID();
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(new MessageRequestDto(messageId, chatId, userId, "1"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(messageRepository, timeout(1000)).insertIgnoringDuplicates(argThat(messages -> messages.get(0).getId().equals(messageId)));
+    }
+
+    @Test
+    void consumeBatch_shouldNotCacheDuplicates_WhenRowAlreadyExists() {
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(
+            new MessageRequestDto(UUID.randomUUID(), chatId, userId, "duplicate"),
+            new MessageRequestDto(UUID.randomUUID(), chatId, userId, "fresh"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList()))
+            .thenAnswer(invocation -> List.of(((List<ChatMessage>) invocation.getArgument(0)).get(1)));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(redisCacheService, timeout(1000)).cacheMessages(
+            argThat(byChat -> byChat.get(chatId).size() == 1 && byChat.get(chatId).get(0).text().equals("fresh")));
+        verify(ack, timeout(1000)).acknowledge();
+    }
+
+    @Test
+    void consumeBatch_shouldSkipRedeliveredMessagesWithoutDatabaseAccess() {
+        UUID messageId = UUID.randomUUID();
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(new MessageRequestDto(messageId, chatId, userId, "1"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        consumerService.consumeBatch(batch, ack, consumer);
+        verify(ack, timeout(1000)).acknowledge();
+
+        consumerService.consumeBatch(batch, ack, consumer);
+
+        verify(ack, timeout(1000).times(2)).acknowledge();
+        verify(knownEntityIds, times(1)).existingChats(anySet());
+        verify(messageRepository, times(1)).insertIgnoringDuplicates(anyList());
+        verify(redisCacheService, times(1)).cacheMessages(anyMap());
+    }
+
+    @Test
+    void consumeBatch_shouldNotMarkProcessed_WhenCacheWriteFails() {
+        UUID messageId = UUID.randomUUID();
+        List<ConsumerRecord<String, MessageRequestDto>> batch = records(new MessageRequestDto(messageId, chatId, userId, "1"));
+
+        when(knownEntityIds.existingChats(Set.of(chatId))).thenReturn(Set.of(chatId));
+        when(knownEntityIds.existingUsers(Set.of(userId))).thenReturn(Set.of(userId));
+        when(messageRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new IllegalStateException("redis is down")).when(redisCacheService).cacheMessages(anyMap());
+        when(failedMessageRouter.route(anyList(), eq(0), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumerService.consumeBatch(batch, ack, consumer);
 
-        verify(messageRepository).save(any(ChatMessage.class));
-        verify(redisCacheService).cacheMessage(eq(chatId), any(ChatMessage.class), eq(100));
+        verify(failedMessageRouter, timeout(1000)).route(anyList(), eq(0), any());
+        assertThat(processedMessageIds.contains(messageId)).isFalse();
     }
 }
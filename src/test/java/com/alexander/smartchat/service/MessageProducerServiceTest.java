@@ -1,23 +1,47 @@
 package com.alexander.smartchat.service;
 
+import com.alexander.smartchat.dto.BulkMessageResultDto;
+import com.alexander.smartchat.dto.MessageAcceptedDto;
 import com.alexander.smartchat.dto.MessageRequestDto;
+import com.alexander.smartchat.exception.PayloadTooLargeException;
+import com.alexander.smartchat.service.kafka.producer.DeliveryMode;
+import com.alexander.smartchat.service.kafka.producer.DeliveryTemplates;
 import com.alexander.smartchat.service.kafka.producer.MessageProducerService;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class MessageProducerServiceTest {
 
+    @Mock
+    private DeliveryTemplates deliveryTemplates;
+
     @Mock
     private KafkaTemplate<String, MessageRequestDto> kafkaTemplate;
 
@@ -27,14 +51,121 @@ class MessageProducerServiceTest {
     @BeforeEach
     void setUp() {
         producerService.setTopic("test-topic");
+        producerService.setDefaultDeliveryMode(DeliveryMode.ALL_ACK);
+        producerService.setBulkMaxSize(3);
+        lenient().when(deliveryTemplates.forMode(any())).thenReturn(kafkaTemplate);
+    }
+
+    private static SendResult<String, MessageRequestDto> sendResult(MessageRequestDto dto) {
+        RecordMetadata metadata = new RecordMetadata(new TopicPartition("test-topic", 2), 41, 0, 0L, 0, 0);
+        return new SendResult<>(new ProducerRecord<>("test-topic", dto.chatId().toString(), dto), metadata);
     }
 
     @Test
     void sendMessage_shouldSendToKafka() {
-        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), "hello");
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "hello");
+        when(kafkaTemplate.send("test-topic", dto.chatId().toString(), dto))
+            .thenReturn(CompletableFuture.completedFuture(sendResult(dto)));
 
-        producerService.sendMessage(dto);
+        MessageAcceptedDto accepted = producerService.sendMessage(dto, null).join();
 
+        verify(deliveryTemplates).forMode(DeliveryMode.ALL_ACK);
         verify(kafkaTemplate, times(1)).send("test-topic", dto.chatId().toString(), dto);
+        assertThat(accepted).isEqualTo(new MessageAcceptedDto(dto.id(), DeliveryMode.ALL_ACK, 2, 41L));
+    }
+
+    @Test
+    void sendMessage_shouldAssignTimeOrderedId_WhenMissing() {
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), "hello");
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(sendResult(invocation.getArgument(2))));
+
+        MessageAcceptedDto accepted = producerService.sendMessage(dto, DeliveryMode.LEADER_ACK).join();
+
+        verify(kafkaTemplate).send(eq("test-topic"), eq(dto.chatId().toString()), argThat(sent -> {
+            assertThat(sent.id()).isNotNull();
+            assertThat(sent.id().version()).isEqualTo(7);
+            return sent.withId(null).equals(dto);
+        }));
+        assertThat(accepted.id()).isNotNull();
+        assertThat(accepted.deliveryMode()).isEqualTo(DeliveryMode.LEADER_ACK);
+    }
+
+    @Test
+    void sendMessage_shouldCompleteImmediately_WhenFireAndForget() {
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "hello");
+        when(kafkaTemplate.send("test-topic", dto.chatId().toString(), dto)).thenReturn(new CompletableFuture<>());
+
+        CompletableFuture<MessageAcceptedDto> accepted = producerService.sendMessage(dto, DeliveryMode.FIRE_AND_FORGET);
+
+        verify(deliveryTemplates).forMode(DeliveryMode.FIRE_AND_FORGET);
+        assertThat(accepted).isCompletedWithValue(new MessageAcceptedDto(dto.id(), DeliveryMode.FIRE_AND_FORGET, null, null));
+    }
+
+    @Test
+    void sendMessage_shouldFail_WhenBrokerRejects() {
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "hello");
+        when(kafkaTemplate.send("test-topic", dto.chatId().toString(), dto))
+            .thenReturn(CompletableFuture.failedFuture(new KafkaException("broker is down")));
+
+        assertThatThrownBy(() -> producerService.sendMessage(dto, DeliveryMode.ALL_ACK).join())
+            .hasCauseInstanceOf(KafkaException.class);
+    }
+
+    @Test
+    void sendMessages_shouldSendAllWithoutFlush_ReturningPerItemResults() {
+        UUID chatId = UUID.randomUUID();
+        MessageRequestDto ok = new MessageRequestDto(chatId, UUID.randomUUID(), "ok");
+        MessageRequestDto invalid = new MessageRequestDto(null, UUID.randomUUID(), "no chat");
+        MessageRequestDto failing = new MessageRequestDto(chatId, UUID.randomUUID(), "failing");
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            MessageRequestDto sent = invocation.getArgument(2);
+            return sent.text().equals("failing")
+                ? CompletableFuture.failedFuture(new KafkaException("broker is down"))
+                : CompletableFuture.completedFuture(sendResult(sent));
+        });
+
+        List<BulkMessageResultDto> results = producerService.sendMessages(List.of(ok, invalid, failing), null).join();
+
+        verify(kafkaTemplate, times(2)).send(anyString(), eq(chatId.toString()), any());
+        verify(kafkaTemplate, never()).flush();
+        assertThat(results).extracting(BulkMessageResultDto::index).containsExactly(0, 1, 2);
+        assertThat(results).extracting(BulkMessageResultDto::status).containsExactly(
+            BulkMessageResultDto.Status.ACCEPTED, BulkMessageResultDto.Status.REJECTED, BulkMessageResultDto.Status.FAILED);
+        assertThat(results.get(0).id()).isNotNull();
+        assertThat(results.get(0).offset()).isEqualTo(41L);
+        assertThat(results.get(2).error()).contains("broker is down");
+    }
+
+    @Test
+    void sendMessages_shouldReportFailedItem_WhenSendThrowsSynchronously() {
+        UUID chatId = UUID.randomUUID();
+        MessageRequestDto first = new MessageRequestDto(chatId, UUID.randomUUID(), "first");
+        MessageRequestDto rejected = new MessageRequestDto(chatId, UUID.randomUUID(), "too big");
+        MessageRequestDto last = new MessageRequestDto(chatId, UUID.randomUUID(), "last");
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            MessageRequestDto sent = invocation.getArgument(2);
+            if (sent.text().equals("too big")) {
+                throw new KafkaException("record too large");
+            }
+            return CompletableFuture.completedFuture(sendResult(sent));
+        });
+
+        List<BulkMessageResultDto> results = producerService.sendMessages(List.of(first, rejected, last), null).join();
+
+        verify(kafkaTemplate, times(3)).send(anyString(), eq(chatId.toString()), any());
+        assertThat(results).extracting(BulkMessageResultDto::status).containsExactly(
+            BulkMessageResultDto.Status.ACCEPTED, BulkMessageResultDto.Status.FAILED, BulkMessageResultDto.Status.ACCEPTED);
+        assertThat(results.get(1).id()).isNotNull();
+        assertThat(results.get(1).error()).contains("record too large");
+    }
+
+    @Test
+    void sendMessages_shouldRejectOversizedBatch() {
+        MessageRequestDto dto = new MessageRequestDto(UUID.randomUUID(), UUID.randomUUID(), "hello");
+
+        assertThatThrownBy(() -> producerService.sendMessages(List.of(dto, dto, dto, dto), null))
+            .isInstanceOf(PayloadTooLargeException.class);
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
     }
 }
@@ -1,27 +1,42 @@
 package com.alexander.smartchat.service;
 
+import com.alexander.smartchat.dto.CountMode;
+import com.alexander.smartchat.dto.MessageCursor;
+import com.alexander.smartchat.dto.MessageHistoryDto;
 import com.alexander.smartchat.dto.MessageResponseDto;
 import com.alexander.smartchat.dto.MessageSearchDto;
+import com.alexander.smartchat.dto.MessageSearchHitDto;
 import com.alexander.smartchat.dto.MessageStatsDto;
+import com.alexander.smartchat.dto.SearchMode;
+import com.alexander.smartchat.entity.ChatMessage;
+import com.alexander.smartchat.exception.InvalidCursorException;
 import com.alexander.smartchat.mapper.MessageMapper;
 import com.alexander.smartchat.repository.MessageRepository;
-import jakarta.persistence.Tuple;
+import com.alexander.smartchat.service.redis.RecentMessages;
+import com.alexander.smartchat.service.redis.RedisCacheService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +48,12 @@ class MessageServiceTest {
     @Mock
     private MessageMapper mapper;
 
+    @Mock
+    private RedisCacheService redisCacheService;
+
+    @Spy
+    private SearchCountCache searchCountCache = new SearchCountCache(Duration.ofMinutes(1), 100);
+
     @InjectMocks
     private MessageService service;
 
@@ -44,67 +65,233 @@ class MessageServiceTest {
     void setUp() {
         chatId = UUID.randomUUID();
         sortDesc = Sort.by("sentAt").descending();
+        service.setCountCap(100);
+    }
+
+    private ChatMessage message(Instant sentAt) {
+        ChatMessage message = ChatMessage.builder().id(UUID.randomUUID()).sentAt(sentAt).build();
+        lenient().when(mapper.toDto(message))
+            .thenReturn(new MessageResponseDto(message.getId(), chatId, UUID.randomUUID(), "text", sentAt));
+        return message;
     }
 
     @Test
-    @DisplayName("getMessages     ")
-    void getMessages_ShouldReturnMappedList() {
-        int limit = 2;
-        pageable = PageRequest.of(0, limit, sortDesc);
+    @DisplayName("getMessages          ")
+    void getMessages_ShouldReturnFirstPageWithNextCursor() {
+        var now = Instant.now();
+        var newest = message(now);
+        var middle = message(now.minusSeconds(1));
+        var extra = message(now.minusSeconds(2));
+        pageable = PageRequest.of(0, 3);
+
+        when(repository.findByChatIdOrderBySentAtDescIdDesc(chatId, pageable)).thenReturn(List.of(newest, middle, extra));
+
+        MessageHistoryDto result = service.getMessages(chatId, 2, null, null);
 
+        assertThat(result.messages()).extracting(MessageResponseDto::id).containsExactly(newest.getId(), middle.getId());
+        assertThat(MessageCursor.decode(result.nextCursor())).isEqualTo(new MessageCursor(middle.getSentAt(), middle.getId()));
+        assertThat(result.prevCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("getMessages  before    (sent_at, id)")
+    void getMessages_ShouldPageBackwards_WhenBeforeCursorGiven() {
         var now = Instant.now();
-        var msg1 = new com.alexander.smartchat.entity.ChatMessage();
-        msg1.setSentAt(now);
-        var dto1 = new MessageResponseDto(UUID.randomUUID(), chatId, UUID.randomUUID(), "hello", now);
+        var cursor = new MessageCursor(now, UUID.randomUUID());
+        var older = message(now.minusSeconds(5));
+        pageable = PageRequest.of(0, 3);
 
-        when(repository.findByChatIdOrderBySentAtDesc(chatId, pageable)).thenReturn(List.of(msg1));
-        when(mapper.toDto(msg1)).thenReturn(dto1);
+        when(repository.findOlder(chatId, cursor.sentAt(), cursor.id(), pageable)).thenReturn(List.of(older));
 
-        var result = service.getMessages(chatId, limit);
+        MessageHistoryDto result = service.getMessages(chatId, 2, cursor.encode(), null);
 
-        assertThat(result).containsExactly(dto1);
-        verify(repository).findByChatIdOrderBySentAtDesc(chatId, pageable);
-        verify(mapper).toDto(msg1);
+        assertThat(result.messages()).extracting(MessageResponseDto::id).containsExactly(older.getId());
+        assertThat(result.nextCursor()).isNull();
+        assertThat(MessageCursor.decode(result.prevCursor()).id()).isEqualTo(older.getId());
     }
 
     @Test
-    @DisplayName("search        DTO")
-    void search_ShouldReturnSearchDto() {
-        int limit = 3;
-        pageable = PageRequest.of(0, limit, sortDesc);
-        String keyword = "test";
+    @DisplayName("getMessages  after       ")
+    void getMessages_ShouldReturnNewerInDescendingOrder_WhenAfterCursorGiven() {
+        var now = Instant.now();
+        var cursor = new MessageCursor(now, UUID.randomUUID());
+        var first = message(now.plusSeconds(1));
+        var second = message(now.plusSeconds(2));
+        pageable = PageRequest.of(0, 3);
+
+        when(repository.findNewer(chatId, cursor.sentAt(), cursor.id(), pageable)).thenReturn(List.of(first, second));
+
+        MessageHistoryDto result = service.getMessages(chatId, 2, null, cursor.encode());
+
+        assertThat(result.messages()).extracting(MessageResponseDto::id).containsExactly(second.getId(), first.getId());
+        assertThat(MessageCursor.decode(result.nextCursor()).id()).isEqualTo(first.getId());
+        assertThat(result.prevCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("getMessages   ")
+    void getMessages_ShouldRejectInvalidCursor() {
+        assertThatThrownBy(() -> service.getMessages(chatId, 10, "not-a-cursor", null))
+            .isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> service.getMessages(chatId, 10, "a", "b"))
+            .isInstanceOf(InvalidCursorException.class);
+        verifyNoInteractions(repository);
+    }
 
-        var msg = new com.alexander.smartchat.entity.ChatMessage();
-        var dto = new MessageResponseDto(UUID.randomUUID(), chatId, UUID.randomUUID(), "containsTest", Instant.now());
-        when(repository.findByChatIdAndTextContainingIgnoreCase(chatId, keyword, pageable))
-            .thenReturn(List.of(msg));
-        when(mapper.toDto(msg)).thenReturn(dto);
-        when(repository.countByChatIdAndTextContainingIgnoreCase(chatId, keyword)).thenReturn(5L);
+    @Test
+    @DisplayName("search        ")
+    void search_ShouldReturnSearchDto() {
+        var hit = hit("hello world", "<mark>hello</mark> world");
+        when(repository.searchFullText(chatId, "hello:* & wor:*", 1, 0)).thenReturn(List.of(hit));
+        when(repository.countFullText(chatId, "hello:* & wor:*", CountMode.CAPPED, 100)).thenReturn(5L);
 
-        MessageSearchDto result = service.search(chatId, keyword, limit);
+        MessageSearchDto result = service.search(chatId, "Hello, wor!", 1, 0, SearchMode.FTS, CountMode.CAPPED);
 
-        assertThat(result.messages()).containsExactly(dto);
+        assertThat(result.messages()).containsExactly(hit);
         assertThat(result.totalMatches()).isEqualTo(5);
-        verify(repository).findByChatIdAndTextContainingIgnoreCase(chatId, keyword, pageable);
-        verify(repository).countByChatIdAndTextContainingIgnoreCase(chatId, keyword);
+        assertThat(result.countMode()).isEqualTo(CountMode.CAPPED);
+        assertThat(result.totalIsLowerBound()).isFalse();
+        verifyNoInteractions(mapper);
+    }
+
+    @Test
+    @DisplayName("search   ,     ")
+    void search_ShouldSkipCount_WhenPageIsNotFull() {
+        var hit = hit("hello world", null);
+        when(repository.searchFullText(chatId, "hello:*", 10, 20)).thenReturn(List.of(hit));
+
+        MessageSearchDto result = service.search(chatId, "hello", 10, 2, SearchMode.FTS, CountMode.EXACT);
+
+        assertThat(result.totalMatches()).isEqualTo(21);
+        assertThat(result.countMode()).isEqualTo(CountMode.EXACT);
+        verify(repository, never()).countFullText(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("search          ")
+    void search_ShouldCapAndCacheTotal() {
+        when(repository.searchFullText(eq(chatId), eq("hello:*"), eq(1), anyInt())).thenReturn(List.of(hit("hello", null)));
+        when(repository.countFullText(chatId, "hello:*", CountMode.CAPPED, 100)).thenReturn(101L);
+
+        MessageSearchDto first = service.search(chatId, "hello", 1, 0, SearchMode.FTS, CountMode.CAPPED);
+        MessageSearchDto second = service.search(chatId, "hello", 1, 1, SearchMode.FTS, CountMode.CAPPED);
+
+        assertThat(first.totalMatches()).isEqualTo(100);
+        assertThat(first.totalIsLowerBound()).isTrue();
+        assertThat(second.totalMatches()).isEqualTo(100);
+        verify(repository, times(1)).countFullText(chatId, "hello:*", CountMode.CAPPED, 100);
+    }
+
+    @Test
+    @DisplayName("search        ")
+    void search_ShouldReturnEmpty_WhenKeywordHasNoTerms() {
+        MessageSearchDto result = service.search(chatId, " !? ", 10, 0, SearchMode.FTS, CountMode.CAPPED);
+
+        assertThat(result.messages()).isEmpty();
+        assertThat(result.totalMatches()).isZero();
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("search     ")
+    void search_ShouldHighlightSubstring() {
+        when(repository.searchSubstring(chatId, "finish", 10, 0)).thenReturn(List.of(hit("Deploy finished OK", null)));
+
+        MessageSearchDto result = service.search(chatId, "finish", 10, 0, SearchMode.SUBSTRING, CountMode.ESTIMATED);
+
+        assertThat(result.messages()).singleElement()
+            .extracting(MessageSearchHitDto::snippet)
+            .isEqualTo("Deploy <mark>finish</mark>ed OK");
+        assertThat(result.totalMatches()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("getRecentMessages     Redis    ")
+    void getRecentMessages_ShouldReturnCachedList_WhenFull() {
+        var now = Instant.now();
+        var cached = List.of(mapper.toDto(message(now)), mapper.toDto(message(now.minusSeconds(1))));
+        when(redisCacheService.recentCacheSize()).thenReturn(100);
+        when(redisCacheService.getRecent(chatId)).thenReturn(new RecentMessages(cached, false));
+
+        assertThat(service.getRecentMessages(chatId, 2)).isEqualTo(cached);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("getRecentMessages   ,      ")
+    void getRecentMessages_ShouldTrustShortList_WhenLoaded() {
+        var cached = List.of(mapper.toDto(message(Instant.now())));
+        when(redisCacheService.recentCacheSize()).thenReturn(100);
+        when(redisCacheService.getRecent(chatId)).thenReturn(new RecentMessages(cached, true));
+
+        assertThat(service.getRecentMessages(chatId, 50)).isEqualTo(cached);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("getRecentMessages         ")
+    void getRecentMessages_ShouldLoadFromDatabase_WhenMissing() {
+        var now = Instant.now();
+        var newest = message(now);
+        var older = message(now.minusSeconds(1));
+        when(redisCacheService.recentCacheSize()).thenReturn(100);
+        when(redisCacheService.getRecent(chatId)).thenReturn(new RecentMessages(List.of(), false));
+        when(repository.findByChatIdOrderBySentAtDescIdDesc(chatId, PageRequest.of(0, 100))).thenReturn(List.of(newest, older));
+
+        List<MessageResponseDto> result = service.getRecentMessages(chatId, 1);
+
+        assertThat(result).extracting(MessageResponseDto::id).containsExactly(newest.getId());
+        verify(redisCacheService).replaceRecentMessages(chatId, new RecentMessages(List.of(), false),
+            List.of(mapper.toDto(newest), mapper.toDto(older)));
+    }
+
+    @Test
+    @DisplayName("getRecentMessages        ")
+    void getRecentMessages_ShouldLoadOnce_ForConcurrentMisses() throws Exception {
+        var newest = message(Instant.now());
+        var loadStarted = new CountDownLatch(1);
+        var secondMissed = new CountDownLatch(2);
+        var release = new CountDownLatch(1);
+        when(redisCacheService.recentCacheSize()).thenReturn(100);
+        when(redisCacheService.getRecent(chatId)).thenAnswer(invocation -> {
+            secondMissed.countDown();
+            return new RecentMessages(List.of(), false);
+        });
+        when(repository.findByChatIdOrderBySentAtDescIdDesc(chatId, PageRequest.of(0, 100))).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(newest);
+        });
+
+        var first = CompletableFuture.supplyAsync(() -> service.getRecentMessages(chatId, 10));
+        assertThat(loadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        var second = CompletableFuture.supplyAsync(() -> service.getRecentMessages(chatId, 10));
+        assertThat(secondMissed.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).extracting(MessageResponseDto::id).containsExactly(newest.getId());
+        assertThat(second.get(5, TimeUnit.SECONDS)).extracting(MessageResponseDto::id).containsExactly(newest.getId());
+        verify(repository, times(1)).findByChatIdOrderBySentAtDescIdDesc(chatId, PageRequest.of(0, 100));
+        verify(redisCacheService, times(1)).replaceRecentMessages(eq(chatId), any(RecentMessages.class), anyList());
+    }
+
+    private MessageSearchHitDto hit(String text, String snippet) {
+        return new MessageSearchHitDto(UUID.randomUUID(), chatId, UUID.randomUUID(), text, Instant.now(), 0.5, snippet);
     }
 
     @Test
     @DisplayName("getStats      ")
     void getStats_ShouldReturnStatsDto() {
-        when(repository.countByChatId(chatId)).thenReturn(10L);
-
-        var tuple = mock(Tuple.class);
         UUID user1 = UUID.randomUUID();
-        when(tuple.get("sender", UUID.class)).thenReturn(user1);
-        when(tuple.get("count", Long.class)).thenReturn(7L);
-        when(repository.countPerUserInChat(chatId)).thenReturn(List.of(tuple));
+        UUID user2 = UUID.randomUUID();
+        when(repository.findSenderStats(chatId)).thenReturn(Map.of(user1, 7L, user2, 3L));
 
         MessageStatsDto stats = service.getStats(chatId);
 
         assertThat(stats.totalMessages()).isEqualTo(10L);
-        assertThat(stats.messagesPerUser()).containsEntry(user1, 7L);
-        verify(repository).countByChatId(chatId);
-        verify(repository).countPerUserInChat(chatId);
+        assertThat(stats.messagesPerUser()).containsEntry(user1, 7L).containsEntry(user2, 3L);
+        verify(repository).findSenderStats(chatId);
+        verifyNoMoreInteractions(repository);
     }
 }
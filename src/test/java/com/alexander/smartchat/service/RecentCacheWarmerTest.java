@@ -0,0 +1,125 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.repository.MessageRepository;
+import com.alexander.smartchat.service.redis.RecentCacheWarmer;
+import com.alexander.smartchat.service.redis.RecentMessagesNearCache;
+import com.alexander.smartchat.service.redis.RedisCacheService;
+import com.alexander.smartchat.service.redis.WarmUpStatus;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ReconnectAttemptEvent;
+import io.lettuce.core.resource.ClientResources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecentCacheWarmerTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private RedisCacheService redisCacheService;
+
+    @Mock
+    private RecentMessagesNearCache nearCache;
+
+    @Mock
+    private ClientResources redisClientResources;
+
+    @InjectMocks
+    private RecentCacheWarmer warmer;
+
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+    private final UUID third = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        warmer.setEnabled(true);
+        warmer.setLookback(Duration.ofHours(24));
+        warmer.setMaxChats(100);
+        warmer.setBatchSize(2);
+        warmer.setParallelism(2);
+    }
+
+    private MessageResponseDto message(UUID chatId) {
+        return new MessageResponseDto(UUID.randomUUID(), chatId, UUID.randomUUID(), "text", Instant.now());
+    }
+
+    @Test
+    void warmUp_ShouldFillActiveChatsInBatches() {
+        when(redisCacheService.recentCacheSize()).thenReturn(100);
+        when(messageRepository.findMostActiveChatIds(any(), eq(100))).thenReturn(List.of(first, second, third));
+        when(messageRepository.findRecentByChatIds(List.of(first, second), 100))
+            .thenReturn(List.of(message(first), message(first), message(second)));
+        when(messageRepository.findRecentByChatIds(List.of(third), 100)).thenReturn(List.of(message(third)));
+        when(redisCacheService.fillRecentIfAbsent(anyMap())).thenAnswer(invocation -> {
+            Map<UUID, List<MessageResponseDto>> byChat = invocation.getArgument(0);
+            return byChat.containsKey(first) ? 1 : byChat.size();
+        });
+
+        WarmUpStatus status = warmer.warmUp("startup");
+
+        assertThat(status.state()).isEqualTo(WarmUpStatus.State.COMPLETED);
+        assertThat(status.chats()).isEqualTo(3);
+        assertThat(status.processedChats()).isEqualTo(3);
+        assertThat(status.filledChats()).isEqualTo(2);
+        assertThat(status.finishedAt()).isNotNull();
+        verify(redisCacheService).fillRecentIfAbsent(argThat(byChat ->
+            byChat.keySet().equals(Set.of(first, second)) && byChat.get(first).size() == 2));
+        assertThat(warmer.status()).isEqualTo(status);
+    }
+
+    @Test
+    void warmUp_ShouldReportFailedBatchesAndContinue() {
+        when(redisCacheService.recentCacheSize()).thenReturn(100);
+        when(messageRepository.findMostActiveChatIds(any(), eq(100))).thenReturn(List.of(first, second, third));
+        when(messageRepository.findRecentByChatIds(List.of(first, second), 100)).thenThrow(new IllegalStateException("db"));
+        when(messageRepository.findRecentByChatIds(List.of(third), 100)).thenReturn(List.of(message(third)));
+        when(redisCacheService.fillRecentIfAbsent(anyMap())).thenReturn(1);
+
+        WarmUpStatus status = warmer.warmUp("startup");
+
+        assertThat(status.state()).isEqualTo(WarmUpStatus.State.FAILED);
+        assertThat(status.failedBatches()).isEqualTo(1);
+        assertThat(status.processedChats()).isEqualTo(3);
+        assertThat(status.filledChats()).isEqualTo(1);
+    }
+
+    @Test
+    void onRedisEvent_ShouldWarmUpOnlyAfterReconnect() {
+        when(messageRepository.findMostActiveChatIds(any(), anyInt())).thenReturn(List.of());
+
+        warmer.onRedisEvent(mock(ConnectionActivatedEvent.class));
+        verifyNoInteractions(nearCache, messageRepository);
+
+        warmer.onRedisEvent(mock(ReconnectAttemptEvent.class));
+        warmer.onRedisEvent(mock(ConnectionActivatedEvent.class));
+
+        verify(nearCache).invalidateAll();
+        verify(messageRepository, timeout(1000)).findMostActiveChatIds(any(), eq(100));
+    }
+
+    @Test
+    void warmUpAsync_ShouldDoNothing_WhenDisabled() {
+        warmer.setEnabled(false);
+
+        assertThat(warmer.warmUpAsync("startup")).isFalse();
+        verifyNoInteractions(messageRepository);
+    }
+}
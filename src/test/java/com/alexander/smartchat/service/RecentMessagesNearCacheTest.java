@@ -0,0 +1,83 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.service.redis.RecentMessages;
+import com.alexander.smartchat.service.redis.RecentMessagesNearCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentMessagesNearCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID chatId = UUID.randomUUID();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private RecentMessages load(UUID chatId) {
+        loads.incrementAndGet();
+        return new RecentMessages(List.of(new MessageResponseDto(UUID.randomUUID(), chatId, UUID.randomUUID(),
+            "text", Instant.now())), true);
+    }
+
+    private DefaultMessage invalidation(String body) {
+        return new DefaultMessage(RecentMessagesNearCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+            body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void get_ShouldLoadOnceAndCountHitsAndMisses() {
+        var cache = new RecentMessagesNearCache(true, Duration.ofMinutes(1), 1_000_000, meterRegistry);
+
+        var first = cache.get(chatId, this::load);
+        var second = cache.get(chatId, this::load);
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.counter("smartchat.recent.cache", "tier", "near", "result", "hit").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("smartchat.recent.cache", "tier", "near", "result", "miss").count()).isEqualTo(1);
+    }
+
+    @Test
+    void onMessage_ShouldDropInvalidatedChat() {
+        var cache = new RecentMessagesNearCache(true, Duration.ofMinutes(1), 1_000_000, meterRegistry);
+        cache.get(chatId, this::load);
+
+        cache.onMessage(invalidation(UUID.randomUUID().toString()), null);
+        cache.get(chatId, this::load);
+        assertThat(loads).hasValue(1);
+
+        cache.onMessage(invalidation(chatId.toString()), null);
+        cache.get(chatId, this::load);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onMessage_ShouldIgnoreMalformedBody() {
+        var cache = new RecentMessagesNearCache(true, Duration.ofMinutes(1), 1_000_000, meterRegistry);
+        cache.get(chatId, this::load);
+
+        cache.onMessage(invalidation("not-a-uuid"), null);
+        cache.get(chatId, this::load);
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void get_ShouldBypassCache_WhenDisabled() {
+        var cache = new RecentMessagesNearCache(false, Duration.ofMinutes(1), 1_000_000, meterRegistry);
+
+        cache.get(chatId, this::load);
+        cache.get(chatId, this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -1,18 +1,35 @@
 package com.alexander.smartchat.service;
 
-import com.alexander.smartchat.entity.ChatMessage;
+import com.alexander.smartchat.dto.MessageResponseDto;
+import com.alexander.smartchat.service.redis.RecentMessages;
+import com.alexander.smartchat.service.redis.RecentMessagesNearCache;
 import com.alexander.smartchat.service.redis.RedisCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InOrder;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -21,80 +38,225 @@ import static org.mockito.Mockito.*;
 class RedisCacheServiceTest {
 
     @Mock
-    private RedisTemplate<String, ChatMessage> redisTemplate;
+    private RedisTemplate<String, MessageResponseDto> redisTemplate;
 
     @Mock
-    private ListOperations<String, ChatMessage> listOperations;
+    private ListOperations<String, MessageResponseDto> listOperations;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisScriptingCommands scriptingCommands;
+
+    @Mock
+    private RedisListCommands listCommands;
+
+    @Mock
+    private RedisKeyCommands keyCommands;
 
-    @InjectMocks
     private RedisCacheService redisCacheService;
+    private RecentMessagesNearCache nearCache;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     private UUID chatId;
-    private ChatMessage message;
-    private Duration ttl = Duration.ofMinutes(10);
+    private MessageResponseDto message;
+    private String expectedKey;
+    private final Duration ttl = Duration.ofMinutes(10);
+    private final int limit = 5;
+    private final Jackson2JsonRedisSerializer<MessageResponseDto> serializer =
+        new Jackson2JsonRedisSerializer<>(new ObjectMapper().findAndRegisterModules(), MessageResponseDto.class);
+    private final List<byte[][]> evals = new ArrayList<>();
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        nearCache = new RecentMessagesNearCache(true, Duration.ofMinutes(1), 1_000_000, meterRegistry);
+        redisCacheService = new RedisCacheService(redisTemplate, stringRedisTemplate, nearCache, meterRegistry);
         chatId = UUID.randomUUID();
-        message = new ChatMessage();
+        message = message("hello");
+        expectedKey = "chat:" + chatId + ":recent:v2";
         redisCacheService.setMessageCacheTtl(ttl);
+        redisCacheService.setRecentCacheSize(limit);
 
         when(redisTemplate.opsForList()).thenReturn(listOperations);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        doReturn(serializer).when(redisTemplate).getValueSerializer();
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+        when(connection.listCommands()).thenReturn(listCommands);
+        when(connection.keyCommands()).thenReturn(keyCommands);
+        when(scriptingCommands.eval(any(byte[].class), eq(ReturnType.INTEGER), eq(1), any(byte[][].class)))
+            .thenAnswer(invocation -> {
+                evals.add((byte[][]) invocation.getRawArguments()[3]);
+                return null;
+            });
+    }
+
+    private MessageResponseDto message(String text) {
+        return new MessageResponseDto(UUID.randomUUID(), chatId, UUID.randomUUID(), text, Instant.now());
     }
 
     @Test
-    void cacheMessage_ShouldPushAndTrimList_AndSetExpireIfKeyAbsent() {
-        String expectedKey = "chat:" + chatId + ":recent";
-        int limit = 5;
+    void cacheMessage_ShouldPushTrimAndExpireInOneScript() {
+        redisCacheService.cacheMessage(chatId, message);
 
-        when(redisTemplate.hasKey(expectedKey)).thenReturn(false);
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        assertEquals(1, evals.size());
+        byte[][] keysAndArgs = evals.get(0);
+        assertEquals(expectedKey, new String(keysAndArgs[0], StandardCharsets.UTF_8));
+        assertEquals(Integer.toString(limit), new String(keysAndArgs[1], StandardCharsets.UTF_8));
+        assertEquals(Long.toString(ttl.toMillis()), new String(keysAndArgs[2], StandardCharsets.UTF_8));
+        assertEquals(message, serializer.deserialize(keysAndArgs[3]));
+        verify(redisTemplate, never()).hasKey(anyString());
+        verifyNoInteractions(listOperations);
+    }
 
-        redisCacheService.cacheMessage(chatId, message, limit);
+    @Test
+    void cacheMessages_ShouldSendAllChatsInOnePipeline() {
+        UUID otherChatId = UUID.randomUUID();
+        MessageResponseDto second = message("second");
+        Map<UUID, List<MessageResponseDto>> byChat = new LinkedHashMap<>();
+        byChat.put(chatId, List.of(message, second));
+        byChat.put(otherChatId, List.of(message("other")));
 
-        InOrder inOrder = inOrder(listOperations, redisTemplate);
+        redisCacheService.cacheMessages(byChat);
 
-        inOrder.verify(listOperations).leftPush(expectedKey, message);
-        inOrder.verify(listOperations).trim(expectedKey, 0, limit - 1);
-        inOrder.verify(redisTemplate).hasKey(expectedKey);
-        inOrder.verify(redisTemplate).expire(expectedKey, ttl);
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        assertEquals(2, evals.size());
+        assertEquals(expectedKey, new String(evals.get(0)[0], StandardCharsets.UTF_8));
+        assertEquals(List.of(message, second),
+            List.of(serializer.deserialize(evals.get(0)[3]), serializer.deserialize(evals.get(0)[4])));
+        assertEquals("chat:" + otherChatId + ":recent:v2", new String(evals.get(1)[0], StandardCharsets.UTF_8));
+        assertEquals(4, evals.get(1).length);
     }
 
     @Test
-    void cacheMessage_ShouldNotSetExpireIfKeyExists() {
-        String expectedKey = "chat:" + chatId + ":recent";
-        int limit = 5;
+    void cacheMessages_ShouldDoNothingForEmptyLists() {
+        redisCacheService.cacheMessages(Map.of(chatId, List.of()));
 
-        when(redisTemplate.hasKey(expectedKey)).thenReturn(true);
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void getRecent_ShouldReadListAndMarkerInOnePipeline_AndServeRepeatsFromNearCache() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return Arrays.asList(List.of(message), true);
+        });
 
-        redisCacheService.cacheMessage(chatId, message, limit);
+        RecentMessages first = redisCacheService.getRecent(chatId);
+        RecentMessages second = redisCacheService.getRecent(chatId);
 
-        verify(listOperations).leftPush(expectedKey, message);
-        verify(listOperations).trim(expectedKey, 0, limit - 1);
-        verify(redisTemplate).hasKey(expectedKey);
-        verify(redisTemplate, never()).expire(anyString(), any());
+        assertEquals(new RecentMessages(List.of(message), true), first);
+        assertEquals(first, second);
+        verify(listCommands, times(1)).lRange(expectedKey.getBytes(StandardCharsets.UTF_8), 0, limit - 1);
+        verify(keyCommands, times(1)).exists((expectedKey + ":loaded").getBytes(StandardCharsets.UTF_8));
+        assertEquals(1.0, counter("near", "hit"));
+        assertEquals(1.0, counter("near", "miss"));
+        assertEquals(1.0, counter("redis", "hit"));
     }
 
     @Test
-    void getRecentMessages_ShouldReturnRangeFromRedis() {
-        String expectedKey = "chat:" + chatId + ":recent";
-        int limit = 10;
+    void getRecent_ShouldCountRedisMiss_WhenNothingIsCached() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(List.of(), false));
 
-        List<ChatMessage> expectedMessages = List.of(message);
-        when(listOperations.range(expectedKey, 0, limit - 1)).thenReturn(expectedMessages);
+        RecentMessages recent = redisCacheService.getRecent(chatId);
 
-        List<ChatMessage> actualMessages = redisCacheService.getRecentMessages(chatId, limit);
+        assertEquals(new RecentMessages(List.of(), false), recent);
+        assertEquals(1.0, counter("redis", "miss"));
+    }
 
-        assertEquals(expectedMessages, actualMessages);
-        verify(listOperations).range(expectedKey, 0, limit - 1);
+    @Test
+    void writes_ShouldPublishInvalidationAndDropNearCacheEntry() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(List.of(), false));
+        redisCacheService.getRecent(chatId);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+
+        redisCacheService.cacheMessage(chatId, message);
+
+        verify(connection).publish(RecentMessagesNearCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+            chatId.toString().getBytes(StandardCharsets.UTF_8));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(List.of(message), false));
+        assertEquals(List.of(message), redisCacheService.getRecent(chatId).messages());
+    }
+
+    private double counter(String tier, String result) {
+        return meterRegistry.counter("smartchat.recent.cache", "tier", tier, "result", result).count();
+    }
+
+    private List<byte[][]> stubReplaceScript(long result) {
+        List<byte[][]> replaceEvals = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation ->
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        when(scriptingCommands.eval(any(byte[].class), eq(ReturnType.INTEGER), eq(2), any(byte[][].class)))
+            .thenAnswer(invocation -> {
+                replaceEvals.add((byte[][]) invocation.getRawArguments()[3]);
+                return result;
+            });
+        return replaceEvals;
+    }
+
+    @Test
+    void replaceRecentMessages_ShouldRewriteListAndMarkLoadedInOneScript() {
+        List<byte[][]> replaceEvals = stubReplaceScript(1L);
+        List<MessageResponseDto> newestFirst = List.of(message("newest"), message);
+
+        boolean replaced = redisCacheService.replaceRecentMessages(chatId,
+            new RecentMessages(List.of(message), false), newestFirst);
+
+        assertEquals(true, replaced);
+        assertEquals(1, replaceEvals.size());
+        byte[][] keysAndArgs = replaceEvals.get(0);
+        assertEquals(expectedKey, new String(keysAndArgs[0], StandardCharsets.UTF_8));
+        assertEquals(expectedKey + ":loaded", new String(keysAndArgs[1], StandardCharsets.UTF_8));
+        assertEquals(Long.toString(ttl.toMillis()), new String(keysAndArgs[2], StandardCharsets.UTF_8));
+        assertEquals(message, serializer.deserialize(keysAndArgs[3]));
+        assertEquals(newestFirst, List.of(serializer.deserialize(keysAndArgs[4]), serializer.deserialize(keysAndArgs[5])));
+        verify(redisTemplate, never()).delete(anyString());
+        verifyNoInteractions(listOperations, valueOperations);
+        verify(stringRedisTemplate).convertAndSend(RecentMessagesNearCache.INVALIDATION_CHANNEL, chatId.toString());
+    }
+
+    @Test
+    void replaceRecentMessages_ShouldExpectEmptyHead_WhenNothingWasCached() {
+        List<byte[][]> replaceEvals = stubReplaceScript(1L);
+
+        redisCacheService.replaceRecentMessages(chatId, new RecentMessages(List.of(), false), List.of());
+
+        assertEquals(4, replaceEvals.get(0).length);
+        assertEquals(0, replaceEvals.get(0)[3].length);
     }
 
     @Test
-    void clearChatCache_ShouldDeleteKey() {
-        String expectedKey = "chat:" + chatId + ":recent";
+    void replaceRecentMessages_ShouldNotNotify_WhenListChangedSinceRead() {
+        stubReplaceScript(0L);
+
+        boolean replaced = redisCacheService.replaceRecentMessages(chatId,
+            new RecentMessages(List.of(), false), List.of(message));
 
+        assertEquals(false, replaced);
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void clearChatCache_ShouldDeleteListAndLoadedMarker() {
         redisCacheService.clearChatCache(chatId);
 
         verify(redisTemplate).delete(expectedKey);
+        verify(stringRedisTemplate).delete(expectedKey + ":loaded");
+        verify(stringRedisTemplate).convertAndSend(RecentMessagesNearCache.INVALIDATION_CHANNEL, chatId.toString());
     }
 }
@@ -0,0 +1,101 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.service.redis.RevokedTokenFilter;
+import com.alexander.smartchat.util.JwtParseUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RevokedTokenFilterTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    private RevokedTokenFilter revokedTokenFilter;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        revokedTokenFilter = new RevokedTokenFilter(stringRedisTemplate, true, 1000, 0.001, new SimpleMeterRegistry());
+    }
+
+    private static String member(byte[] digest) {
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    @Test
+    void mightBeRevoked_ShouldFallBackToRedis_BeforeFirstRebuild() {
+        assertThat(revokedTokenFilter.mightBeRevoked(JwtParseUtil.digest("token"))).isTrue();
+    }
+
+    @Test
+    void rebuild_ShouldLoadRevokedTokensAndDropExpired() {
+        byte[] revoked = JwtParseUtil.digest("revoked");
+        when(zSetOperations.range(RevokedTokenFilter.REVOKED_KEY, 0, -1)).thenReturn(Set.of(member(revoked)));
+
+        revokedTokenFilter.rebuild();
+
+        verify(zSetOperations).removeRangeByScore(eq(RevokedTokenFilter.REVOKED_KEY), eq(0.0), anyDouble());
+        assertThat(revokedTokenFilter.mightBeRevoked(revoked)).isTrue();
+        assertThat(revokedTokenFilter.mightBeRevoked(JwtParseUtil.digest("live"))).isFalse();
+    }
+
+    @Test
+    void rebuild_ShouldFallBackToRedis_WhenRedisUnavailable() {
+        when(zSetOperations.range(RevokedTokenFilter.REVOKED_KEY, 0, -1)).thenReturn(new LinkedHashSet<>());
+        revokedTokenFilter.rebuild();
+        when(zSetOperations.range(RevokedTokenFilter.REVOKED_KEY, 0, -1))
+            .thenThrow(new RedisConnectionFailureException("down"));
+
+        revokedTokenFilter.rebuild();
+
+        assertThat(revokedTokenFilter.mightBeRevoked(JwtParseUtil.digest("live"))).isTrue();
+    }
+
+    @Test
+    void revoke_ShouldStoreUntilExpiryAndNotifyOtherInstances() {
+        when(zSetOperations.range(RevokedTokenFilter.REVOKED_KEY, 0, -1)).thenReturn(new LinkedHashSet<>());
+        revokedTokenFilter.rebuild();
+        byte[] digest = JwtParseUtil.digest("logout");
+        Instant expiresAt = Instant.now().plusSeconds(900);
+
+        revokedTokenFilter.revoke(digest, expiresAt);
+
+        verify(zSetOperations).add(RevokedTokenFilter.REVOKED_KEY, member(digest), expiresAt.toEpochMilli());
+        verify(stringRedisTemplate).convertAndSend(RevokedTokenFilter.REVOKED_CHANNEL, member(digest));
+        assertThat(revokedTokenFilter.mightBeRevoked(digest)).isTrue();
+    }
+
+    @Test
+    void onMessage_ShouldAddTokenRevokedElsewhere() {
+        when(zSetOperations.range(RevokedTokenFilter.REVOKED_KEY, 0, -1)).thenReturn(new LinkedHashSet<>());
+        revokedTokenFilter.rebuild();
+        byte[] digest = JwtParseUtil.digest("remote");
+
+        revokedTokenFilter.onMessage(new DefaultMessage(
+            RevokedTokenFilter.REVOKED_CHANNEL.getBytes(StandardCharsets.UTF_8),
+            member(digest).getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(revokedTokenFilter.mightBeRevoked(digest)).isTrue();
+    }
+}
@@ -4,14 +4,16 @@ import com.alexander.smartchat.dto.JwtResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -22,57 +24,79 @@ class TokenServiceTest {
     private RedisTemplate<String, JwtResponse> tokenRedisTemplate;
 
     @Mock
-    private ValueOperations<String, JwtResponse> valueOperations;
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
 
     @Mock
     private HashOperations<String, Object, JwtResponse> hashOperations;
 
-    @InjectMocks
     private TokenService tokenService;
 
     private final String USERNAME = "alice";
     private final String USER_ID = "user-123";
+    private final String TOKEN_ID = "jti-1";
     private final JwtResponse JWT = new JwtResponse("access", "refresh");
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        when(tokenRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        tokenService = new TokenService(tokenRedisTemplate, stringRedisTemplate);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
         doReturn(hashOperations).when(tokenRedisTemplate).opsForHash();
     }
 
     @Test
-    @DisplayName("saveTokenBlackList       Redis")
-    void saveTokenBlackList_ShouldCallValueOperationsSet() {
-        tokenService.saveTokenBlackList(USERNAME, JWT);
+    @DisplayName("revokeToken     jti    ")
+    void revokeToken_ShouldSetKeyWithRemainingLifetime() {
+        tokenService.revokeToken(TOKEN_ID, Duration.ofMinutes(10));
 
-        verify(tokenRedisTemplate).opsForValue();
-        verify(valueOperations).set(USERNAME, JWT);
-        verifyNoMoreInteractions(valueOperations, tokenRedisTemplate);
+        verify(valueOperations).set("revoked:" + TOKEN_ID, "1", Duration.ofMinutes(10));
+        verifyNoInteractions(tokenRedisTemplate);
     }
 
     @Test
-    @DisplayName("getTokenBlackList   Optional  JwtResponse,   ")
-    void getTokenBlackList_WhenPresent_ShouldReturnOptional() {
-        when(valueOperations.get(USERNAME)).thenReturn(JWT);
-        Optional<JwtResponse> result = tokenService.getTokenBlackList(USERNAME);
+    @DisplayName("revokeToken       ")
+    void revokeToken_WhenExpired_ShouldSkip() {
+        tokenService.revokeToken(TOKEN_ID, Duration.ofSeconds(-1));
 
-        assertThat(result).contains(JWT);
+        verifyNoInteractions(valueOperations);
+    }
+
+    @Test
+    @DisplayName("isRevoked   true   jti")
+    void isRevoked_WhenTokenRevoked_ShouldReturnTrue() {
+        when(valueOperations.multiGet(List.of("revoked:" + TOKEN_ID, "user:" + USERNAME + ":token-version")))
+            .thenReturn(Arrays.asList("1", null));
 
-        verify(tokenRedisTemplate).opsForValue();
-        verify(valueOperations).get(USERNAME);
+        assertThat(tokenService.isRevoked(TOKEN_ID, USERNAME, 0)).isTrue();
     }
 
     @Test
-    @DisplayName("getTokenBlackList    Optional,   ")
-    void getTokenBlackList_WhenNotPresent_ShouldReturnEmpty() {
-        when(valueOperations.get(USERNAME)).thenReturn(null);
-        Optional<JwtResponse> result = tokenService.getTokenBlackList(USERNAME);
+    @DisplayName("isRevoked        ")
+    void isRevoked_ShouldCompareTokenVersion() {
+        when(valueOperations.multiGet(List.of("revoked:" + TOKEN_ID, "user:" + USERNAME + ":token-version")))
+            .thenReturn(Arrays.asList(null, "2"));
 
-        assertThat(result).isEmpty();
+        assertThat(tokenService.isRevoked(TOKEN_ID, USERNAME, 1)).isTrue();
+        assertThat(tokenService.isRevoked(TOKEN_ID, USERNAME, 2)).isFalse();
+    }
+
+    @Test
+    @DisplayName("getTokenVersion   0,     ")
+    void getTokenVersion_WhenAbsent_ShouldReturnZero() {
+        when(valueOperations.get("user:" + USERNAME + ":token-version")).thenReturn(null);
 
-        verify(tokenRedisTemplate).opsForValue();
-        verify(valueOperations).get(USERNAME);
+        assertThat(tokenService.getTokenVersion(USERNAME)).isZero();
+    }
+
+    @Test
+    @DisplayName("incrementTokenVersion     ")
+    void incrementTokenVersion_ShouldIncrementCounter() {
+        when(valueOperations.increment("user:" + USERNAME + ":token-version")).thenReturn(3L);
+
+        assertThat(tokenService.incrementTokenVersion(USERNAME)).isEqualTo(3);
     }
 
     @Test
@@ -96,5 +120,12 @@ class TokenServiceTest {
         verify(tokenRedisTemplate).opsForHash();
         verify(hashOperations).get("user_tokens", USER_ID);
     }
-}
 
+    @Test
+    @DisplayName("removeUserToken   refresh-    user_tokens")
+    void removeUserToken_ShouldDeleteHashEntry() {
+        tokenService.removeUserToken(USER_ID);
+
+        verify(hashOperations).delete("user_tokens", USER_ID);
+    }
+}
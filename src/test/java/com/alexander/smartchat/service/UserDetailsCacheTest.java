@@ -0,0 +1,106 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.entity.Role;
+import com.alexander.smartchat.entity.User;
+import com.alexander.smartchat.security.UserDetailsImpl;
+import com.alexander.smartchat.service.redis.UserDetailsCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDetailsCacheTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private UserDetails load(String username) {
+        loads.incrementAndGet();
+        return new UserDetailsImpl(User.builder().username(username).password("hash").role(Role.USER).build());
+    }
+
+    private UserDetailsCache cache() {
+        return new UserDetailsCache(stringRedisTemplate, true, Duration.ofMinutes(5), 100, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_ShouldLoadUserOnce() {
+        UserDetailsCache cache = cache();
+
+        UserDetails first = cache.get("alice", this::load);
+        UserDetails second = cache.get("alice", this::load);
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void get_ShouldNotCacheMissingUser() {
+        UserDetailsCache cache = cache();
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> cache.get("ghost", username -> {
+                loads.incrementAndGet();
+                throw new UsernameNotFoundException(username);
+            })).isInstanceOf(UsernameNotFoundException.class);
+        }
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onMessage_ShouldDropInvalidatedUser() {
+        UserDetailsCache cache = cache();
+        cache.get("alice", this::load);
+
+        cache.onMessage(new DefaultMessage(UserDetailsCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+            "alice".getBytes(StandardCharsets.UTF_8)), null);
+        cache.get("alice", this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void evictAfterCommit_ShouldPublishOnlyAfterCommit() {
+        UserDetailsCache cache = cache();
+        cache.get("alice", this::load);
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.evictAfterCommit("alice");
+        cache.get("alice", this::load);
+        verifyNoInteractions(stringRedisTemplate);
+        assertThat(loads).hasValue(1);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        cache.get("alice", this::load);
+
+        verify(stringRedisTemplate).convertAndSend(UserDetailsCache.INVALIDATION_CHANNEL, "alice");
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -8,6 +8,7 @@ import com.alexander.smartchat.exception.ResourceNotFoundException;
 import com.alexander.smartchat.mapper.UserMapper;
 import com.alexander.smartchat.repository.UserRepository;
 import com.alexander.smartchat.security.UserDetailsImpl;
+import com.alexander.smartchat.service.redis.UserDetailsCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -21,6 +22,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -37,6 +39,12 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private KnownEntityIds knownEntityIds;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -60,8 +68,14 @@ class UserServiceTest {
         userResponseDto = new UserResponseDto(userId, Role.USER, "testuser", "email@example.com");
     }
 
+    private void passThroughUserDetailsCache() {
+        when(userDetailsCache.get(anyString(), any())).thenAnswer(invocation ->
+            invocation.<Function<String, UserDetails>>getArgument(1).apply(invocation.getArgument(0)));
+    }
+
     @Test
     void loadUserByUsername_UserExists_ReturnsUserDetails() {
+        passThroughUserDetailsCache();
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(userEntity));
 
         UserDetails userDetails = userService.loadUserByUsername("testuser");
@@ -75,6 +89,7 @@ class UserServiceTest {
 
     @Test
     void loadUserByUsername_UserNotFound_ThrowsException() {
+        passThroughUserDetailsCache();
         when(userRepository.findByUsername("unknown")).thenReturn(Optional.empty());
 
         assertThrows(UsernameNotFoundException.class,
@@ -143,6 +158,8 @@ class UserServiceTest {
 
         verify(userRepository).findById(userId);
         verify(userRepository).delete(userEntity);
+        verify(knownEntityIds).evictUserAfterCommit(userId);
+        verify(userDetailsCache).evictAfterCommit("testuser");
     }
 
     @Test
@@ -153,5 +170,16 @@ class UserServiceTest {
 
         verify(userRepository).findById(userId);
         verify(userRepository, never()).delete(any());
+        verifyNoInteractions(userDetailsCache);
+    }
+
+    @Test
+    void loadUserByUsername_CachedUser_SkipsRepository() {
+        UserDetails cached = new UserDetailsImpl(userEntity);
+        when(userDetailsCache.get(eq("testuser"), any())).thenReturn(cached);
+
+        assertSame(cached, userService.loadUserByUsername("testuser"));
+
+        verifyNoInteractions(userRepository);
     }
 }
@@ -0,0 +1,81 @@
+package com.alexander.smartchat.service;
+
+import com.alexander.smartchat.entity.Role;
+import com.alexander.smartchat.entity.User;
+import com.alexander.smartchat.service.jwt.JwtProvider;
+import com.alexander.smartchat.service.jwt.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class VerifiedTokenCacheTest {
+
+    private static final String ACCESS_SECRET = "YWNjZXNzLXNlY3JldC1mb3ItdGVzdHMtYWNjZXNzLXNlY3JldC1mb3ItdGVzdHM=";
+    private static final String REFRESH_SECRET = "cmVmcmVzaC1zZWNyZXQtZm9yLXRlc3RzLXJlZnJlc2gtc2VjcmV0LWZvci10ZXN0cw==";
+
+    private JwtProvider jwtProvider;
+    private VerifiedTokenCache verifiedTokenCache;
+    private String accessToken;
+
+    @BeforeEach
+    void setUp() {
+        jwtProvider = spy(new JwtProvider(ACCESS_SECRET, REFRESH_SECRET));
+        ReflectionTestUtils.setField(jwtProvider, "accessValidity", 15L);
+        verifiedTokenCache = new VerifiedTokenCache(jwtProvider, true, 100, new SimpleMeterRegistry());
+        accessToken = jwtProvider.generateAccessToken(User.builder().username("alice").role(Role.USER).build(), 0);
+    }
+
+    @Test
+    @DisplayName("Повторный запрос с тем же токеном должен обходиться без проверки подписи")
+    void parseAccessToken_ShouldVerifyOnce_WhenTokenRepeated() {
+        Optional<Claims> first = verifiedTokenCache.parseAccessToken(accessToken);
+        Optional<Claims> second = verifiedTokenCache.parseAccessToken(accessToken);
+
+        verify(jwtProvider, times(1)).parseAccessToken(accessToken);
+        assertThat(second).containsSame(first.orElseThrow());
+        assertThat(second.get().getSubject()).isEqualTo("alice");
+    }
+
+    @Test
+    @DisplayName("Недействительный токен не должен попадать в кеш")
+    void parseAccessToken_ShouldNotCache_WhenTokenInvalid() {
+        String forged = accessToken + "x";
+
+        assertThat(verifiedTokenCache.parseAccessToken(forged)).isEmpty();
+        assertThat(verifiedTokenCache.parseAccessToken(forged)).isEmpty();
+
+        verify(jwtProvider, times(2)).parseAccessToken(forged);
+        assertThat(verifiedTokenCache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Отозванный токен должен снова проходить полную проверку")
+    void invalidate_ShouldForceVerification_WhenTokenRevoked() {
+        verifiedTokenCache.parseAccessToken(accessToken);
+
+        verifiedTokenCache.invalidate(accessToken);
+        verifiedTokenCache.parseAccessToken(accessToken);
+
+        verify(jwtProvider, times(2)).parseAccessToken(accessToken);
+    }
+
+    @Test
+    @DisplayName("Отключенный кеш должен проверять токен при каждом запросе")
+    void parseAccessToken_ShouldAlwaysVerify_WhenDisabled() {
+        VerifiedTokenCache disabled = new VerifiedTokenCache(jwtProvider, false, 100, new SimpleMeterRegistry());
+
+        disabled.parseAccessToken(accessToken);
+        disabled.parseAccessToken(accessToken);
+
+        verify(jwtProvider, times(2)).parseAccessToken(accessToken);
+        assertThat(disabled.size()).isZero();
+    }
+}
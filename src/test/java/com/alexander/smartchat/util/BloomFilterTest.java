@@ -0,0 +1,71 @@
+package com.alexander.smartchat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    private static byte[] sha256(String value) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMightContain_noFalseNegatives() throws NoSuchAlgorithmException {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        List<byte[]> added = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            byte[] digest = sha256("token-" + i);
+            filter.put(digest);
+            added.add(digest);
+        }
+
+        for (byte[] digest : added) {
+            assertTrue(filter.mightContain(digest));
+        }
+    }
+
+    @Test
+    public void testMightContain_falsePositiveRateWithinBound() throws NoSuchAlgorithmException {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(sha256("revoked-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(sha256("live-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 100_000 * 0.02, "Ложных срабатываний: " + falsePositives);
+    }
+
+    @Test
+    public void testMightContain_emptyFilterContainsNothing() throws NoSuchAlgorithmException {
+        BloomFilter filter = new BloomFilter(100, 0.001);
+
+        assertFalse(filter.mightContain(sha256("token")));
+        assertTrue(filter.hashCount() > 1);
+    }
+
+    @Test
+    public void testPut_rejectsShortKeys() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        assertThrows(IllegalArgumentException.class, () -> filter.put(new byte[8]));
+    }
+
+    @Test
+    public void testConstructor_rejectsInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+    }
+}
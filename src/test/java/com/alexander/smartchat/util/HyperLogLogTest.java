@@ -0,0 +1,54 @@
+package com.alexander.smartchat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testEstimate_withinStandardError() {
+        HyperLogLog hll = new HyperLogLog(12);
+        for (int i = 0; i < 100_000; i++) {
+            hll.add(UUID.randomUUID());
+        }
+
+        assertEquals(100_000, hll.estimate(), 100_000 * 0.05);
+    }
+
+    @Test
+    public void testEstimate_ignoresDuplicates() {
+        HyperLogLog hll = new HyperLogLog(8);
+        UUID[] ids = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        for (int i = 0; i < 1000; i++) {
+            hll.add(ids[i % ids.length]);
+        }
+
+        assertEquals(3, hll.estimate());
+    }
+
+    @Test
+    public void testMerge_countsUnion() {
+        HyperLogLog first = new HyperLogLog(10);
+        HyperLogLog second = new HyperLogLog(10);
+        for (int i = 0; i < 2000; i++) {
+            UUID id = UUID.randomUUID();
+            first.add(id);
+            if (i % 2 == 0) {
+                second.add(id);
+            }
+            second.add(UUID.randomUUID());
+        }
+
+        first.merge(second);
+
+        assertEquals(4000, first.estimate(), 4000 * 0.1);
+    }
+
+    @Test
+    public void testMerge_withDifferentPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(8).merge(new HyperLogLog(10)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.alexander.smartchat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpaceSavingTest {
+
+    private static final UUID A = new UUID(0, 1);
+    private static final UUID B = new UUID(0, 2);
+    private static final UUID C = new UUID(0, 3);
+
+    @Test
+    public void testTop_findsHeavyHittersInLongTail() {
+        UUID hot = new UUID(1, 1);
+        UUID warm = new UUID(1, 2);
+        SpaceSaving sketch = new SpaceSaving(10);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(hot, 1);
+            if (i % 2 == 0) {
+                sketch.add(warm, 1);
+            }
+            sketch.add(new UUID(2, i), 1);
+        }
+
+        List<SpaceSaving.Entry> top = sketch.top(2);
+
+        assertEquals(hot, top.get(0).key());
+        assertEquals(warm, top.get(1).key());
+        assertTrue(top.get(0).count() - top.get(0).error() <= 10_000);
+        assertTrue(top.get(0).count() >= 10_000);
+    }
+
+    @Test
+    public void testTop_isExactWhileUnderCapacity() {
+        SpaceSaving sketch = new SpaceSaving(4);
+        sketch.add(A, 3);
+        sketch.add(B, 1);
+        sketch.add(A, 2);
+
+        assertEquals(List.of(new SpaceSaving.Entry(A, 5, 0), new SpaceSaving.Entry(B, 1, 0)), sketch.top(5));
+    }
+
+    @Test
+    public void testMerge_sumsCountersAndKeepsCapacity() {
+        SpaceSaving first = new SpaceSaving(2);
+        first.add(A, 5);
+        first.add(B, 1);
+        SpaceSaving second = new SpaceSaving(2);
+        second.add(A, 1);
+        second.add(C, 4);
+
+        List<SpaceSaving.Entry> top = SpaceSaving.merge(2, List.of(first, second)).top(5);
+
+        assertEquals(List.of(new SpaceSaving.Entry(A, 6, 0), new SpaceSaving.Entry(C, 4, 0)), top);
+    }
+
+    @Test
+    public void testSlots_growWithDistinctKeysUpToCapacity() {
+        SpaceSaving sketch = new SpaceSaving(32);
+        sketch.add(A, 1);
+        assertEquals(4, sketch.slots());
+
+        for (int i = 0; i < 100; i++) {
+            sketch.add(new UUID(3, i), 1);
+        }
+
+        assertEquals(32, sketch.slots());
+        assertEquals(32, sketch.top(100).size());
+    }
+}
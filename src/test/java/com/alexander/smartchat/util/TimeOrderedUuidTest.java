@@ -0,0 +1,27 @@
+package com.alexander.smartchat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeOrderedUuidTest {
+
+    @Test
+    public void testNext_isVersion7() {
+        UUID uuid = TimeOrderedUuid.next();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    public void testFromMillis_ordersByTimestamp() {
+        UUID earlier = TimeOrderedUuid.fromMillis(1_700_000_000_000L);
+        UUID later = TimeOrderedUuid.fromMillis(1_700_000_000_001L);
+
+        assertTrue(earlier.toString().compareTo(later.toString()) < 0);
+        assertEquals(1_700_000_000_000L, earlier.getMostSignificantBits() >>> 16);
+    }
+}